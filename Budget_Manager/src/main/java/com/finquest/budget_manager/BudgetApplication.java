@@ -3,6 +3,9 @@ package com.finquest.budget_manager;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -34,13 +37,6 @@ import javafx.geometry.Side;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.SVGPath;
 
-// Imports for all controllers
-import com.finquest.budget_manager.SettingsController;
-import com.finquest.budget_manager.TransactionsController;
-import com.finquest.budget_manager.IncomeController;
-import com.finquest.budget_manager.ExpensesController;
-import com.finquest.budget_manager.ReportsController;
-
 // Removed Image and ImageView imports
 
 
@@ -59,6 +55,13 @@ public class BudgetApplication extends Application {
     private final String MAIN_STYLESHEET = "/com/finquest/budget_manager/styles.css";
     private final String DARK_STYLESHEET = "/com/finquest/budget_manager/dark-theme.css";
 
+    // Sidebar view paths
+    private final String EXPENSES_VIEW = "/com/finquest/budget_manager/expenses-veiw.fxml";
+    private final String INCOME_VIEW = "/com/finquest/budget_manager/income-view.fxml";
+    private final String TRANSACTIONS_VIEW = "/com/finquest/budget_manager/transactions-view.fxml";
+    private final String REPORTS_VIEW = "/com/finquest/budget_manager/reports-view.fxml";
+    private final String SETTINGS_VIEW = "/com/finquest/budget_manager/settings-view.fxml";
+
 
     // UI references for dashboard
     private Label leftToSpendLabel;
@@ -83,15 +86,23 @@ public class BudgetApplication extends Application {
     // Network simulation
     private boolean networkAvailable = true;
     private Label networkStatusLabel;
+    private Label saveStatusLabel;
     private Label appTitleLabel;
 
     // Persistence files
-    private final String DATA_FILE = "finquest_data.dat";
-    private final String SETTINGS_FILE = "finquest_settings.txt";
+    private final String DATA_FILE = "finquest_ledger";
+    private final int RECENT_MONTHS = 1; // Only the current budget month; older months stay on disk until a view asks for them
+    // Run with -Dfinquest.repository=h2 to answer queries from an embedded database
+    private final String REPOSITORY_PROPERTY = "finquest.repository";
+    // Run with -Dfinquest.columns=true to keep loaded rows in primitive arrays (large ledgers)
+    private final String COLUMNS_PROPERTY = "finquest.columns";
 
     // Dashboard container reference (so we can restore it)
     private VBox dashboardMainContent;
 
+    // The sidebar's other views, loaded once and kept
+    private final ViewManager views = new ViewManager(this);
+
     // Scroll and Zoom
     private ScrollPane mainScrollPane;
     private double currentZoomFactor = 1.0;
@@ -105,8 +116,20 @@ public class BudgetApplication extends Application {
     // Currency Listener (already here)
     private final CurrencyUtil.CurrencyChangeListener currencyListener = (code, sym) -> Platform.runLater(() -> {
         updateBudgetDisplay();
+        // Every amount in the list is drawn in the old currency
+        if (transactionsListView != null) transactionsListView.refresh();
     });
 
+    // The theme can also change by editing the settings file while we run
+    private final SettingsStore.SettingsListener themeListener = (key, value) -> {
+        if (SettingsStore.THEME.equals(key)) applyThemeToScene(value);
+    };
+
+    // Save status comes from the writer thread
+    private final PersistenceWriter.DurabilityListener durabilityListener = (state) -> {
+        Platform.runLater(() -> updateSaveStatus(state));
+    };
+
 
     @Override
     public void start(Stage primaryStage) {
@@ -118,7 +141,7 @@ public class BudgetApplication extends Application {
             loadData();
 
             // Load theme preference on startup
-            String savedTheme = loadSettings(); // This no longer loads the budget
+            String savedTheme = SettingsStore.getInstance().getTheme();
 
             setupAllEventHandlers(primaryStage);
             updateBudgetDisplay(); // This will pull the budget from BudgetManager
@@ -126,6 +149,8 @@ public class BudgetApplication extends Application {
             // Add BOTH listeners
             CurrencyUtil.addListener(currencyListener);
             BudgetManager.addListener(budgetListener);
+            DataStore.getInstance().addDurabilityListener(durabilityListener);
+            SettingsStore.getInstance().addListener(themeListener);
 
             // Setup Scene and apply theme
             mainScene = new Scene(root, 1000, 700);
@@ -140,6 +165,9 @@ public class BudgetApplication extends Application {
             primaryStage.setMinHeight(650);
             primaryStage.show();
 
+            // Build the other views in the background while the dashboard is up
+            views.preload(EXPENSES_VIEW, INCOME_VIEW, TRANSACTIONS_VIEW, REPORTS_VIEW, SETTINGS_VIEW);
+
         } catch (Exception e) {
             e.printStackTrace();
             createFallbackUI(primaryStage);
@@ -214,68 +242,30 @@ public class BudgetApplication extends Application {
         }
     }
 
-    // =================================================================
-    // SETTINGS / CURRENCY LOADING
-    // =================================================================
-
-    // Returns the theme string for application startup
-    private String loadSettings() {
-        String savedTheme = "Light";
-        try {
-            File file = new File(SETTINGS_FILE);
-            if (!file.exists()) return savedTheme;
-
-            // Budget is loaded by BudgetManager, we only need theme
-            List<String> lines = java.nio.file.Files.readAllLines(file.toPath());
-
-            for (String line : lines) {
-                if (line.startsWith("THEME=")) {
-                    savedTheme = line.substring("THEME=".length()).trim();
-                    break; // Found what we need
-                }
-            }
-        } catch (Exception ignored) {}
-        return savedTheme;
-    }
-
-    private void saveSettings() {
-        try {
-            java.util.Map<String, String> map = new java.util.HashMap<>();
-            java.nio.file.Path p = java.nio.file.Path.of(SETTINGS_FILE);
-            if (java.nio.file.Files.exists(p)) {
-                for (String line : java.nio.file.Files.readAllLines(p)) {
-                    if (line == null || line.isBlank()) continue;
-                    int idx = line.indexOf('=');
-                    if (idx > 0) map.put(line.substring(0, idx).trim(), line.substring(idx + 1).trim());
-                }
-            }
-
-            // All other settings are saved by their respective managers
-            // This method is now just a placeholder for other non-managed settings.
-
-            try (PrintWriter pw = new PrintWriter(new FileWriter(SETTINGS_FILE))) {
-                map.forEach((k, v) -> pw.println(k + "=" + v));
-            }
-        } catch (Exception ignored) {}
-    }
-
     // =================================================================
     // DATA PERSISTENCE
     // =================================================================
 
-    @SuppressWarnings("unchecked")
     private void loadData() {
         try {
-            File file = new File(DATA_FILE);
-            if (file.exists()) {
-                ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file));
-                java.util.List<Transaction> saved = (java.util.List<Transaction>) ois.readObject();
-                DataStore.getInstance().getTransactions().setAll(saved);
-                ois.close();
+            if (Boolean.getBoolean(COLUMNS_PROPERTY)) DataStore.getInstance().useColumnStore();
+            // DataStore reads this month's segment and replays the change journal
+            if (DataStore.getInstance().load(RECENT_MONTHS)) {
                 System.out.println("FINQUEST: Data loaded from " + DATA_FILE);
+                if ("h2".equalsIgnoreCase(System.getProperty(REPOSITORY_PROPERTY))) {
+                    DataStore.getInstance().useDatabase(JdbcTransactionRepository.DEFAULT_URL);
+                }
+                if (DataStore.getInstance().isRestoredFromBackup()) {
+                    showAlert("Data Restored", "Your data file was damaged, so FINQUEST loaded the last backup. "
+                            + "Recent changes may be missing.");
+                }
             } else {
                 setupPlaceholderData();
             }
+        } catch (IOException e) {
+            // Don't fall back to placeholder data here, it would end up saved over the real ledger
+            e.printStackTrace();
+            showAlert("Load Error", "Could not load your data: " + e.getMessage());
         } catch (Exception e) {
             System.out.println("FINQUEST: Could not load data, using placeholder data");
             setupPlaceholderData();
@@ -284,9 +274,8 @@ public class BudgetApplication extends Application {
 
     public void saveData() {
         try {
-            DataStore.getInstance().save();
-            saveSettings(); // Saves any other persistent settings
-            System.out.println("FINQUEST: Data saved to " + DATA_FILE);
+            DataStore.getInstance().save(); // Returns right away; the writer thread does the disk work
+            System.out.println("FINQUEST: Data queued for " + DATA_FILE);
             showTemporaryNotification("FINQUEST Data Saved Successfully! 💾");
         } catch (Exception e) {
             e.printStackTrace();
@@ -439,8 +428,17 @@ public class BudgetApplication extends Application {
         primaryStage.setOnShown(e -> showTemporaryNotification("FINQUEST Ready - Welcome back!"));
         primaryStage.setOnHidden(e -> {
             saveData();
+            try {
+                DataStore.getInstance().flush(); // Wait for the writer so nothing is lost on exit
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                showAlert("Save Error", "Your latest changes could not be written to disk: " + ex.getMessage());
+            }
+            SettingsStore.getInstance().flush();
             CurrencyUtil.removeListener(currencyListener);
             BudgetManager.removeListener(budgetListener);
+            DataStore.getInstance().removeDurabilityListener(durabilityListener);
+            SettingsStore.getInstance().removeListener(themeListener);
             System.out.println("FINQUEST closed");
         });
     }
@@ -523,21 +521,22 @@ public class BudgetApplication extends Application {
 
             switch (itemText) {
                 case "Expenses":
-                    fxmlPath = "/com/finquest/budget_manager/expenses-veiw.fxml";
+                    fxmlPath = EXPENSES_VIEW;
                     break;
                 case "Income":
-                    fxmlPath = "/com/finquest/budget_manager/income-view.fxml";
+                    fxmlPath = INCOME_VIEW;
                     break;
                 case "Settings":
-                    fxmlPath = "/com/finquest/budget_manager/settings-view.fxml";
+                    fxmlPath = SETTINGS_VIEW;
                     break;
                 case "Reports":
-                    fxmlPath = "/com/finquest/budget_manager/reports-view.fxml";
+                    fxmlPath = REPORTS_VIEW;
                     break;
                 case "Transactions":
-                    fxmlPath = "/com/finquest/budget_manager/transactions-view.fxml";
+                    fxmlPath = TRANSACTIONS_VIEW;
                     break;
                 case "Dashboard":
+                    views.showOther();
                     viewToLoad = dashboardMainContent;
                     break;
                 default:
@@ -546,22 +545,8 @@ public class BudgetApplication extends Application {
             }
 
             if (fxmlPath != null) {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-                viewToLoad = loader.load();
-                Object controller = loader.getController();
-
-                // Pass the main application instance to any controller that needs it.
-                if (controller instanceof SettingsController) {
-                    ((SettingsController) controller).setMainApplication(this);
-                } else if (controller instanceof TransactionsController) {
-                    ((TransactionsController) controller).setMainApplication(this);
-                } else if (controller instanceof IncomeController) {
-                    ((IncomeController) controller).setMainApplication(this);
-                } else if (controller instanceof ExpensesController) {
-                    ((ExpensesController) controller).setMainApplication(this);
-                } else if (controller instanceof ReportsController) {
-                    ((ReportsController) controller).setMainApplication(this);
-                }
+                // Preloaded at startup (or loaded now if it isn't ready), then reused
+                viewToLoad = views.show(fxmlPath);
             }
 
             if (viewToLoad != null) {
@@ -718,11 +703,21 @@ public class BudgetApplication extends Application {
         networkStatusLabel = new Label("🟢 FINQUEST Connected");
         networkStatusLabel.getStyleClass().add("network-status-label");
 
+        saveStatusLabel = new Label();
+        saveStatusLabel.getStyleClass().add("network-status-label");
+        updateSaveStatus(DataStore.getInstance().getDurability());
+
         HBox.setHgrow(titleLabel, Priority.ALWAYS);
-        header.getChildren().addAll(titleLabel, networkStatusLabel);
+        header.getChildren().addAll(titleLabel, saveStatusLabel, networkStatusLabel);
         return header;
     }
 
+    private void updateSaveStatus(PersistenceWriter.Durability state) {
+        if (saveStatusLabel == null) return;
+        saveStatusLabel.setText(state == PersistenceWriter.Durability.PENDING
+                ? "💾 Saving…" : "💾 All changes saved");
+    }
+
     // --- MODIFIED: Removed event handlers, CSS now handles hover effects ---
     private HBox createStatCard(String title, String emoji, Label dataLabel) {
         HBox card = new HBox(15);
@@ -785,6 +780,12 @@ public class BudgetApplication extends Application {
             private final Label dateLabel = new Label();
             private final Region spacer = new Region();
             private final Label amountLabel = new Label();
+            // The labels are bound to the shown row's properties, so an edit
+            // updates them without refreshing the list; only the amount's
+            // colour needs a listener, for when the row's kind is edited
+            private Transaction shown;
+            private final InvalidationListener kindListener = obs -> styleAmount();
+            private final WeakInvalidationListener weakKindListener = new WeakInvalidationListener(kindListener);
 
             {
                 cardLayout.setAlignment(Pos.CENTER_LEFT);
@@ -802,44 +803,36 @@ public class BudgetApplication extends Application {
             @Override
             protected void updateItem(Transaction transaction, boolean empty) {
                 super.updateItem(transaction, empty);
-                if (empty || transaction == null) {
+                if (shown != null) shown.kindProperty().removeListener(weakKindListener);
+                shown = empty ? null : transaction;
+                titleLabel.textProperty().unbind();
+                dateLabel.textProperty().unbind();
+                iconLabel.textProperty().unbind();
+                amountLabel.textProperty().unbind();
+                if (shown == null) {
                     setText(null);
                     setGraphic(null);
                 } else {
-                    titleLabel.setText(transaction.getTitle());
-                    dateLabel.setText(transaction.getFormattedDate());
-                    iconLabel.setText(getEmojiForCategory(transaction.getCategory()));
-                    String formattedAmount = CurrencyUtil.formatCurrency(transaction.getAmount());
-                    amountLabel.getStyleClass().removeAll("transaction-amount-in", "transaction-amount-out");
-
-                    if ("Income".equalsIgnoreCase(transaction.getType())) {
-                        amountLabel.setText("+" + formattedAmount);
-                        amountLabel.getStyleClass().add("transaction-amount-in");
-                    } else {
-                        amountLabel.setText("-" + formattedAmount);
-                        amountLabel.getStyleClass().add("transaction-amount-out");
-                    }
+                    Transaction tx = shown;
+                    titleLabel.textProperty().bind(tx.titleProperty());
+                    dateLabel.textProperty().bind(Bindings.createStringBinding(tx::getFormattedDate, tx.dateProperty()));
+                    iconLabel.textProperty().bind(Bindings.createStringBinding(
+                            () -> tx.getCategoryInfo().getIcon(), tx.categoryProperty()));
+                    amountLabel.textProperty().bind(Bindings.createStringBinding(
+                            () -> tx.getKind().getSign() + CurrencyUtil.formatCurrency(tx.getAmount()),
+                            tx.amountProperty(), tx.kindProperty()));
+                    tx.kindProperty().addListener(weakKindListener);
+                    styleAmount();
                     setGraphic(cardLayout);
                     setText(null);
                 }
             }
-        });
-    }
 
-    private String getEmojiForCategory(String category) {
-        if (category == null) return "🧾"; // Default receipt
-        switch (category.toLowerCase()) {
-            case "food & dining": return "🍔";
-            case "shopping": return "🛍️";
-            case "transportation": return "🚗";
-            case "bills & utilities": return "💡";
-            case "entertainment": return "🎬";
-            case "healthcare": return "❤️‍🩹";
-            case "education": return "🎓";
-            case "business": return "💼";
-            case "income": case "salary": case "bonus": case "freelance": return "💰";
-            default: return "🧾";
-        }
+            private void styleAmount() {
+                amountLabel.getStyleClass().removeAll("transaction-amount-in", "transaction-amount-out");
+                amountLabel.getStyleClass().add(shown.getKind().getStyleClass());
+            }
+        });
     }
 
     private VBox createAddTransactionSection() {
@@ -946,12 +939,10 @@ public class BudgetApplication extends Application {
     }
 
     private void calculateTotals() {
-        totalIncome = 0.0;
-        totalExpenses = 0.0;
-        for (Transaction tx : DataStore.getInstance().getTransactions()) {
-            if (tx.getType() != null && tx.getType().toLowerCase().contains("income")) totalIncome += tx.getAmount();
-            else totalExpenses += tx.getAmount();
-        }
+        // Kept up to date by DataStore as rows change, including history still on disk
+        LedgerAggregates totals = DataStore.getInstance().getAggregates();
+        totalIncome = totals.getTotalIncome();
+        totalExpenses = totals.getTotalExpenses();
     }
 
     /**
@@ -961,37 +952,21 @@ public class BudgetApplication extends Application {
     public void updateBudgetDisplay() {
         calculateTotals();
         double currentBudget = BudgetManager.getMonthlyBudget();
-        double leftToSpend = currentBudget - totalExpenses;
+        // The budget is monthly, so only this month's spending counts against it
+        double spentThisMonth = DataStore.getInstance().getAggregates().getCurrentMonth().getExpenses();
+        double leftToSpend = currentBudget - spentThisMonth;
 
         if (leftToSpendLabel != null) leftToSpendLabel.setText(CurrencyUtil.formatCurrency(leftToSpend));
         if (monthlyBudgetLabel != null) monthlyBudgetLabel.setText(CurrencyUtil.formatCurrency(currentBudget));
         if (totalIncomeLabel != null) totalIncomeLabel.setText(CurrencyUtil.formatCurrency(totalIncome));
         if (totalExpensesLabel != null) totalExpensesLabel.setText(CurrencyUtil.formatCurrency(totalExpenses));
 
-        if (transactionsListView != null) transactionsListView.refresh();
-
         if (networkStatusLabel != null) updateNetworkStatus(); // Use full method
 
         if (budgetPieChart != null) {
+            // Reuses the two slices, so a refresh only moves them
             double remaining = (leftToSpend > 0) ? leftToSpend : 0.0;
-            double spent = totalExpenses;
-
-            PieChart.Data spentSlice = new PieChart.Data("Spent", spent);
-            PieChart.Data remainingSlice = new PieChart.Data("Remaining", remaining);
-            budgetPieChart.setData(FXCollections.observableArrayList(spentSlice, remainingSlice));
-
-            // These styles are dynamic and should stay in Java
-            spentSlice.getNode().setStyle("-fx-pie-color: " + FINQUEST_WARNING + ";");
-            remainingSlice.getNode().setStyle("-fx-pie-color: " + FINQUEST_ACCENT + ";");
-
-            double total = spent + remaining;
-            if (total == 0) {
-                spentSlice.setName("Spent (0.0%)");
-                remainingSlice.setName("Remaining (0.0%)");
-            } else {
-                spentSlice.setName(String.format("Spent (%.1f%%)", (spent / total) * 100));
-                remainingSlice.setName(String.format("Remaining (%.1f%%)", (remaining / total) * 100));
-            }
+            ChartUtil.setBudgetDonut(budgetPieChart, spentThisMonth, remaining);
         }
     }
 
@@ -1057,7 +1032,8 @@ public class BudgetApplication extends Application {
             return null;
         });
         dialog.showAndWait().ifPresent(result -> {
-            transactionsListView.refresh();
+            // The edited row's cells follow its properties, wherever it's shown
+            DataStore.getInstance().updateTransaction(result);
             updateBudgetDisplay();
             saveData();
             showSuccess("Transaction Updated", "Transaction edited successfully!");
@@ -49,14 +49,9 @@ public class BudgetController implements Initializable {
     }
 
     private void updateLabels() {
-        double totalExpenses = 0;
-        for(Transaction tx : DataStore.getInstance().getTransactions()) {
-            if (!"Income".equalsIgnoreCase(tx.getType())) {
-                totalExpenses += tx.getAmount();
-            }
-        }
-        double budget = 2000.00; // Placeholder
-        double left = budget - totalExpenses;
+        double spentThisMonth = DataStore.getInstance().getAggregates().getCurrentMonth().getExpenses();
+        double budget = BudgetManager.getMonthlyBudget();
+        double left = budget - spentThisMonth;
 
         if (leftToSpendLabel != null) leftToSpendLabel.setText(CurrencyUtil.formatCurrency(left));
         if (monthlyBudgetLabel != null) monthlyBudgetLabel.setText(CurrencyUtil.formatCurrency(budget));
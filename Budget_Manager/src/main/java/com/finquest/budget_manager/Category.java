@@ -0,0 +1,126 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One category name, shared by every transaction that uses it.
+ *
+ * Category.of() interns names into a registry: each distinct name gets one
+ * Category with a small int id and its icon worked out up front, and
+ * Transaction keeps that instance. Rows with the same category then share
+ * one String, and code that groups or filters by category can compare ids
+ * or references instead of text. Names are matched exactly, the way they
+ * are stored; the icon lookup ignores case.
+ *
+ * The registry only grows. It's safe to use from the loader threads.
+ */
+public final class Category {
+
+    private static final String DEFAULT_ICON = "🧾"; // Receipt
+    private static final Map<String, String> ICONS = Map.of(
+            "food & dining", "🍔",
+            "shopping", "🛍️",
+            "transportation", "🚗",
+            "bills & utilities", "💡",
+            "entertainment", "🎬",
+            "healthcare", "❤️‍🩹",
+            "education", "🎓",
+            "business", "💼");
+    private static final List<String> INCOME_NAMES = List.of("income", "salary", "bonus", "freelance");
+
+    /**
+     * Stands for "no category" (a null name). Its id is 0.
+     */
+    public static final Category NONE = new Category(0, null);
+
+    private static final Map<String, Category> registry = new ConcurrentHashMap<>();
+    // Indexed by id; replaced (never changed) under the registry lock, so reads need no lock
+    private static volatile Category[] ids = {NONE};
+
+    private final int id;
+    private final String name;
+    private final String icon;
+
+    private Category(int id, String name) {
+        this.id = id;
+        this.name = name;
+        this.icon = iconOf(name);
+    }
+
+    /**
+     * The shared Category for a name, registered on first use.
+     */
+    public static Category of(String name) {
+        if (name == null) return NONE;
+        Category category = registry.get(name);
+        return category != null ? category : registry.computeIfAbsent(name, Category::register);
+    }
+
+    /**
+     * The Category for a name if it's registered, without registering it.
+     * @return NONE for null, and null if nobody has used the name yet.
+     */
+    public static Category find(String name) {
+        return name == null ? NONE : registry.get(name);
+    }
+
+    /**
+     * The Category with this id, or NONE if there isn't one.
+     */
+    public static Category byId(int id) {
+        Category[] all = ids;
+        return id >= 0 && id < all.length ? all[id] : NONE;
+    }
+
+    /**
+     * One more than the highest id handed out so far.
+     */
+    public static int count() {
+        return ids.length;
+    }
+
+    // Called once per name, inside computeIfAbsent
+    private static synchronized Category register(String name) {
+        Category[] all = ids;
+        Category category = new Category(all.length, name);
+        Category[] grown = Arrays.copyOf(all, all.length + 1);
+        grown[all.length] = category;
+        ids = grown;
+        return category;
+    }
+
+    private static String iconOf(String name) {
+        if (name == null) return DEFAULT_ICON;
+        String key = name.toLowerCase(Locale.ROOT);
+        if (INCOME_NAMES.contains(key)) return "💰";
+        return ICONS.getOrDefault(key, DEFAULT_ICON);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * The name as stored, or null for NONE.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The emoji shown next to transactions in this category.
+     */
+    public String getIcon() {
+        return icon;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
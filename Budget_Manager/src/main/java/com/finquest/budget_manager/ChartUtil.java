@@ -0,0 +1,94 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.collections.ObservableList;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Brings chart data up to date in place. A chart builds nodes for every
+ * data point it's given (and animates them in), so instead of replacing
+ * the data on each refresh the points that are already there are kept and
+ * only their values set; points are added or removed only when a slice or
+ * category comes or goes. FX thread only.
+ */
+public final class ChartUtil {
+
+    private static final String SPENT_COLOR = "#E74C3C"; // Red
+    private static final String REMAINING_COLOR = "#2ECC71"; // Green
+
+    private ChartUtil() {
+    }
+
+    /**
+     * Makes the chart show one slice per entry, matched to the existing
+     * slices by name. New slices go at the end.
+     */
+    public static void setPie(PieChart chart, Map<String, Double> values) {
+        ObservableList<PieChart.Data> data = chart.getData();
+        data.removeIf(slice -> !values.containsKey(slice.getName()));
+        Map<String, PieChart.Data> byName = new HashMap<>();
+        for (PieChart.Data slice : data) byName.put(slice.getName(), slice);
+
+        for (Map.Entry<String, Double> e : values.entrySet()) {
+            PieChart.Data slice = byName.get(e.getKey());
+            if (slice == null) data.add(new PieChart.Data(e.getKey(), e.getValue()));
+            else if (slice.getPieValue() != e.getValue()) slice.setPieValue(e.getValue());
+        }
+    }
+
+    /**
+     * Makes the series show one bar (or point) per entry, in the map's
+     * order, matched to the existing ones by category.
+     */
+    public static <X> void setSeries(XYChart.Series<X, Number> series, Map<X, ? extends Number> values) {
+        ObservableList<XYChart.Data<X, Number>> data = series.getData();
+        data.removeIf(point -> !values.containsKey(point.getXValue()));
+        Map<X, XYChart.Data<X, Number>> byX = new HashMap<>();
+        for (XYChart.Data<X, Number> point : data) byX.put(point.getXValue(), point);
+
+        // The axis lists categories in the order the points come in, so new ones are put in place
+        int i = 0;
+        for (Map.Entry<X, ? extends Number> e : values.entrySet()) {
+            XYChart.Data<X, Number> point = byX.get(e.getKey());
+            if (point != null && data.get(i) != point) {
+                // Out of order; a fresh point is safer than moving one the chart may still be animating
+                data.remove(point);
+                point = null;
+            }
+            if (point == null) data.add(i, new XYChart.Data<>(e.getKey(), e.getValue()));
+            else if (point.getYValue().doubleValue() != e.getValue().doubleValue()) point.setYValue(e.getValue());
+            i++;
+        }
+    }
+
+    /**
+     * The budget donut: a red "Spent" and a green "Remaining" slice,
+     * labelled with their share. Made once, then only their values and
+     * labels change.
+     */
+    public static void setBudgetDonut(PieChart chart, double spent, double remaining) {
+        ObservableList<PieChart.Data> data = chart.getData();
+        if (data.size() != 2) {
+            data.setAll(new PieChart.Data("Spent", spent), new PieChart.Data("Remaining", remaining));
+            data.get(0).getNode().setStyle("-fx-pie-color: " + SPENT_COLOR + ";");
+            data.get(1).getNode().setStyle("-fx-pie-color: " + REMAINING_COLOR + ";");
+        }
+        PieChart.Data spentSlice = data.get(0);
+        PieChart.Data remainingSlice = data.get(1);
+        if (spentSlice.getPieValue() != spent) spentSlice.setPieValue(spent);
+        if (remainingSlice.getPieValue() != remaining) remainingSlice.setPieValue(remaining);
+
+        double total = spent + remaining;
+        if (total == 0) {
+            spentSlice.setName("Spent (0.0%)");
+            remainingSlice.setName("Remaining (0.0%)");
+        } else {
+            spentSlice.setName(String.format("Spent (%.1f%%)", (spent / total) * 100));
+            remainingSlice.setName(String.format("Remaining (%.1f%%)", (remaining / total) * 100));
+        }
+    }
+}
@@ -1,9 +1,6 @@
 //Esguerra
 package com.finquest.budget_manager;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,7 +10,6 @@ import java.util.Objects;
  * Static utility class to manage currency formatting and listeners.
  */
 public class CurrencyUtil {
-    private static final String SETTINGS_FILE = "finquest_settings.txt";
     private static final DecimalFormat AMOUNT_FORMAT = new DecimalFormat("#,##0.00");
 
     private static String currentSymbol = "₱"; // Default
@@ -22,40 +18,27 @@ public class CurrencyUtil {
     // List of listeners to notify when currency changes
     private static final List<CurrencyChangeListener> listeners = new ArrayList<>();
 
-    // Static initializer: Runs once when the class is first used.
-    // This loads the saved currency from the settings file.
+    // The saved currency comes from SettingsStore, which also tells us
+    // when it changes (including edits to the settings file itself)
     static {
-        try {
-            File file = new File(SETTINGS_FILE);
-            if (!file.exists()) {
-                System.out.println("CurrencyUtil: No settings file, using default PHP.");
-                setCurrency("PHP");
-            } else {
-                List<String> lines = Files.readAllLines(file.toPath());
-                String code = "PHP"; // Default
-                for (String line : lines) {
-                    if (line.startsWith("CURRENCY=")) {
-                        code = line.substring("CURRENCY=".length()).trim();
-                        break;
-                    }
-                }
-                setCurrency(code);
-                System.out.println("CurrencyUtil: Loaded currency " + code);
+        applyCurrency(SettingsStore.getInstance().getCurrency());
+        System.out.println("CurrencyUtil: Loaded currency " + currentCode);
+        SettingsStore.getInstance().addListener((key, value) -> {
+            if (SettingsStore.CURRENCY.equals(key)) {
+                applyCurrency(value);
+                notifyListeners();
             }
-        } catch (IOException e) { // Catch the file exception properly
-            System.out.println("CurrencyUtil: Error loading settings, using default PHP.");
-            setCurrency("PHP");
-        } catch (Exception e) {
-            System.out.println("CurrencyUtil: Unknown error during settings load.");
-            setCurrency("PHP");
-        }
+        });
     }
 
     /**
      * Formats a double value into a currency string (e.g., "₱1,234.56").
      */
     public static String formatCurrency(double amount) {
-        return currentSymbol + AMOUNT_FORMAT.format(amount);
+        // Reports are exported on a background thread, and DecimalFormat isn't thread-safe
+        synchronized (AMOUNT_FORMAT) {
+            return currentSymbol + AMOUNT_FORMAT.format(amount);
+        }
     }
 
     /**
@@ -63,30 +46,27 @@ public class CurrencyUtil {
      * @param code The currency code (e.g., "PHP", "USD").
      */
     public static void setCurrency(String code) {
-        if (code == null) code = "PHP";
-        currentCode = code;
+        // Saved by the store, which calls back into applyCurrency and the listeners
+        SettingsStore.getInstance().setCurrency(symbolOf(code) == null ? "PHP" : code);
+    }
+
+    private static void applyCurrency(String code) {
+        String symbol = symbolOf(code);
+        currentCode = symbol != null ? code : "PHP";
+        currentSymbol = symbol != null ? symbol : "₱";
+    }
 
+    // null for codes we don't support
+    private static String symbolOf(String code) {
+        if (code == null) return null;
         switch (code) {
-            case "USD":
-                currentSymbol = "$";
-                break;
-            case "EUR":
-                currentSymbol = "€";
-                break;
-            case "GBP":
-                currentSymbol = "£";
-                break;
-            case "JPY":
-                currentSymbol = "¥";
-                break;
-            case "PHP":
-            default:
-                currentSymbol = "₱";
-                currentCode = "PHP";
-                break;
+            case "USD": return "$";
+            case "EUR": return "€";
+            case "GBP": return "£";
+            case "JPY": return "¥";
+            case "PHP": return "₱";
+            default: return null;
         }
-        // Notify all registered listeners of the change
-        notifyListeners();
     }
 
     public static String getCurrencyCode() {
@@ -1,27 +1,109 @@
 //Esguerra
 package com.finquest.budget_manager;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List; // <-- THE FIX: This line was missing
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 /**
  * Singleton DataStore to hold the application's transaction list.
  * This ensures all controllers are looking at the same data.
+ *
+ * Persistence is one segment file per month (see LedgerSegments) plus an
+ * append-only journal: every add, edit and delete becomes one journal
+ * record. Once the journal has grown past COMPACT_THRESHOLD records, or
+ * half the loaded list if that's bigger, the months those records touched
+ * are rewritten and the journal is emptied. Months nobody edited are left
+ * alone. Each segment uses the binary format in LedgerFile.
+ *
+ * With load(recentMonths) only the last few months are turned into
+ * Transaction objects. Older months stay in their memory-mapped segments
+ * and are paged into the list by loadHistorySince() when a view needs them.
+ *
+ * All disk writes happen on PersistenceWriter's background thread, so
+ * save() never blocks the FX thread. Call flush() to wait for them.
+ *
+ * DataStore is also the default TransactionRepository: queries cover the
+ * loaded list and the months still on disk without paging them in. The
+ * months are scanned in parallel.
  */
-public class DataStore {
+public class DataStore implements TransactionRepository {
     private static final DataStore instance = new DataStore();
-    private static final String DATA_FILE = "finquest_data.dat";
+    private static final String DATA_FILE = "finquest_data.dat"; // Single-file ledger of older versions
+    private static final String LEDGER_DIR = "finquest_ledger";
+    private static final String JOURNAL_FILE = "finquest_journal.dat";
+    private static final int COMPACT_THRESHOLD = 500;
+    // Decodes older months for loadHistorySinceInBackground()
+    private static final ExecutorService HISTORY_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "finquest-history");
+        t.setDaemon(true);
+        return t;
+    });
 
     private final ObservableList<Transaction> transactions;
+    private TransactionRepository memory; // Queries over the loaded list
+    private TransactionColumns columns; // Set by useColumnStore()
+    private final LedgerAggregates aggregates;
+    private SearchIndex searchIndex; // Built on first use, see getSearchIndex()
+    private FilterIndex filterIndex; // Likewise, see getFilterIndex()
+    private LedgerAnalytics analytics; // Likewise, see getAnalytics()
+    private volatile TransactionRepository repository = this; // Swapped by the writer thread, see useDatabase()
+    private final LedgerSegments segments = new LedgerSegments(Path.of(LEDGER_DIR));
+    private final TransactionJournal journal = new TransactionJournal(JOURNAL_FILE);
+    private final PersistenceWriter writer = new PersistenceWriter(journal);
+
+    // Changes made since the last save(), in the order they happened
+    private final List<TransactionJournal.Record> pending = new ArrayList<>();
+    private int journaledSinceCompact = 0;
+    private long nextId = 1;
+    private boolean loading = false;
+    private boolean restoredFromBackup = false;
+
+    // Which segment each loaded row is saved in, and the segments that
+    // changes since the last compaction have to rewrite
+    private final Map<Long, String> homeSegment = new HashMap<>();
+    private final Set<String> dirtySegments = new HashSet<>();
+    private final Set<String> failedSegments = ConcurrentHashMap.newKeySet(); // Added by the writer thread
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+
+    // Lazy history: these months are still only on disk
+    private final NavigableSet<YearMonth> unloadedMonths = new TreeSet<>();
+    private LocalDate loadedSince;
+    private final Set<Long> skipIds = new HashSet<>(); // on disk, but superseded by a row in memory
 
     private DataStore() {
         // Initialize with an empty list.
         // BudgetApplication's loadData() will populate it.
         transactions = FXCollections.observableArrayList();
+        transactions.addListener(this::onTransactionsChanged);
+        memory = new InMemoryTransactionRepository(transactions);
+        aggregates = new LedgerAggregates(transactions); // Listens after us, so new rows have ids
         System.out.println("DataStore: new instance created");
     }
 
@@ -33,41 +115,687 @@ public class DataStore {
         return transactions;
     }
 
+    /**
+     * Where views should send their totals and range queries. This is the
+     * DataStore itself unless useDatabase() switched it to H2.
+     */
+    public TransactionRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Running totals over the whole ledger (loaded or not). Cheaper than
+     * a repository query when all a view needs is a total.
+     */
+    public LedgerAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Title and category search over the loaded rows. Built the first time
+     * a view asks for it, then kept up to date like the aggregates.
+     */
+    public SearchIndex getSearchIndex() {
+        if (searchIndex == null) searchIndex = new SearchIndex(transactions);
+        return searchIndex;
+    }
+
+    /**
+     * Bitmap indexes for the table filters, built on first use like the
+     * search index.
+     */
+    public FilterIndex getFilterIndex() {
+        if (filterIndex == null) filterIndex = new FilterIndex(transactions);
+        return filterIndex;
+    }
+
+    /**
+     * Largest expenses, sizes per category and merchants per month for
+     * the Reports view, built on first use like the indexes.
+     */
+    public LedgerAnalytics getAnalytics() {
+        if (analytics == null) analytics = new LedgerAnalytics(transactions, query -> memory.find(query));
+        return analytics;
+    }
+
+    /**
+     * Keeps the loaded rows in a TransactionColumns from now on: the
+     * Transaction objects in the list become views over its arrays, and
+     * queries over the loaded list scan the arrays. Rows already loaded are
+     * moved in right away. For big ledgers with many queries over them;
+     * it makes queries faster, not the ledger smaller.
+     */
+    public void useColumnStore() {
+        if (columns != null) return;
+        columns = new TransactionColumns();
+        for (Transaction tx : transactions) columns.add(tx);
+        memory = columns;
+        System.out.println("DataStore: " + columns.size() + " transactions moved to the column store");
+    }
+
+    /**
+     * Answers queries from an embedded database once it's ready. The
+     * database is rebuilt in the background if it doesn't match the ledger
+     * (first run, or a crash between the journal and the database), and
+     * then follows every save. Until then queries stay on the DataStore,
+     * which gives the same answers.
+     */
+    public void useDatabase(String url) {
+        JdbcTransactionRepository db;
+        try {
+            db = JdbcTransactionRepository.open(url);
+        } catch (SQLException e) {
+            System.out.println("DataStore: could not open " + url + ", queries stay on the ledger files. " + e.getMessage());
+            return;
+        }
+        save(); // Anything not yet queued is part of the copy below
+        TransactionQuery all = TransactionQuery.all();
+        boolean inSync = db.count(all) == count(all) && Math.abs(db.sum(all) - sum(all)) < 0.005;
+        writer.addMirror(db, inSync ? null : allRowsCopy(), () -> repository = db);
+    }
+
     public void addTransaction(Transaction transaction) {
         transactions.add(transaction);
-        // You could also call save() here if you want to save on every add
+        // The list listener records the add in the journal
+    }
+
+    /**
+     * Adds many transactions as one list change (used by the importer),
+     * so listeners and views update once instead of once per row.
+     */
+    public void addTransactions(Collection<Transaction> batch) {
+        transactions.addAll(batch);
+    }
+
+    /**
+     * Call after changing a transaction's fields in place (edit dialog,
+     * table edit commit). The list itself doesn't notice those changes,
+     * so without this the edit would never reach the journal.
+     */
+    public void updateTransaction(Transaction transaction) {
+        if (transaction == null || loading) return;
+        pending.add(TransactionJournal.Record.of(TransactionJournal.OP_UPDATE, transaction));
+        markDirty(transaction);
+        YearMonth countedIn = aggregates.monthOf(transaction.getId()); // Before the edit
+        aggregates.update(transaction);
+        if (searchIndex != null) searchIndex.update(transaction);
+        if (filterIndex != null) filterIndex.update(transaction);
+        if (analytics != null) analytics.update(transaction, countedIn);
+    }
+
+    private void onTransactionsChanged(ListChangeListener.Change<? extends Transaction> change) {
+        if (columns != null) {
+            // Before anything else reads the rows, loading included
+            while (change.next()) {
+                if (change.wasPermutated()) continue;
+                for (Transaction tx : change.getRemoved()) columns.remove(tx);
+                for (Transaction tx : change.getAddedSubList()) columns.add(tx);
+            }
+            change.reset();
+        }
+        if (loading) return;
+        while (change.next()) {
+            if (change.wasPermutated()) continue; // Order only, nothing to persist
+            for (Transaction tx : change.getRemoved()) {
+                pending.add(TransactionJournal.Record.of(TransactionJournal.OP_DELETE, tx));
+                markDirty(tx);
+            }
+            for (Transaction tx : change.getAddedSubList()) {
+                if (tx.getId() == 0) tx.setId(nextId++);
+                pending.add(TransactionJournal.Record.of(TransactionJournal.OP_ADD, tx));
+                markDirty(tx);
+            }
+        }
+    }
+
+    // The segment the row is saved in (a date edit moves it out of there)
+    // and the one it belongs in now
+    private void markDirty(Transaction tx) {
+        String home = homeSegment.get(tx.getId());
+        if (home != null) dirtySegments.add(home);
+        dirtySegments.add(LedgerSegments.keyOf(tx.getDate()));
     }
 
     /**
-     * Saves the current list of transactions to the data file.
-     * This is called by BudgetApplication.
+     * Hands the changes made since the last save to the background writer
+     * and returns right away. Only the new journal records hit the disk;
+     * the touched months are rewritten when the journal gets too long.
      */
     public void save() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            // Must save as a standard ArrayList, not an ObservableList
-            oos.writeObject(new ArrayList<>(transactions));
-            System.out.println("DataStore: saved " + transactions.size() + " transactions to " + DATA_FILE);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (!pending.isEmpty()) {
+            journaledSinceCompact += pending.size();
+            writer.submit(pending);
+            pending.clear();
+        }
+        // One compaction at a time; changes made meanwhile wait for the next
+        if (journaledSinceCompact >= compactThreshold() && compactionQueued.compareAndSet(false, true)) {
+            writer.submitSnapshot(captureSegments());
+            journaledSinceCompact = 0;
         }
     }
 
+    // Lets the journal grow with the ledger, so big batches (imports)
+    // don't rewrite the same months over and over
+    private int compactThreshold() {
+        return Math.max(COMPACT_THRESHOLD, transactions.size() / 2);
+    }
+
+    /**
+     * Saves and waits until everything is on disk. Used on exit.
+     *
+     * @throws IOException if the journal could not be written
+     */
+    public void flush() throws IOException {
+        save();
+        writer.flush();
+    }
+
     /**
-     * Loads transactions from the data file.
-     * Note: This is now handled by BudgetApplication's loadData() method.
-     * This method is kept for future reference if you refactor.
+     * Rewrites the touched segments, empties the journal and waits for it.
+     *
+     * @throws IOException if the journal could not be written
      */
-    @SuppressWarnings("unchecked")
-    public void load() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            File file = new File(DATA_FILE);
-            if (file.exists()) {
-                List<Transaction> savedList = (List<Transaction>) ois.readObject();
-                transactions.setAll(savedList);
-                System.out.println("DataStore: loaded " + savedList.size() + " transactions from " + DATA_FILE);
+    public void compact() throws IOException {
+        writer.submit(pending);
+        pending.clear();
+        writer.flush(); // Lets a compaction that's already queued finish first
+        compactionQueued.set(true);
+        writer.submitSnapshot(captureSegments());
+        journaledSinceCompact = 0;
+        writer.flush();
+    }
+
+    /**
+     * Whether every saved change has reached the disk.
+     */
+    public PersistenceWriter.Durability getDurability() {
+        return writer.getDurability();
+    }
+
+    /**
+     * Listeners are called on the writer thread; wrap UI work in Platform.runLater.
+     */
+    public void addDurabilityListener(PersistenceWriter.DurabilityListener listener) {
+        writer.addListener(listener);
+    }
+
+    public void removeDurabilityListener(PersistenceWriter.DurabilityListener listener) {
+        writer.removeListener(listener);
+    }
+
+    /**
+     * Copies the rows of every dirty segment while we're still on the FX
+     * thread, so the writer never touches live Transaction objects.
+     * A month that was never paged in keeps the rows it has on disk.
+     */
+    private PersistenceWriter.SnapshotJob captureSegments() {
+        Set<String> keys = new HashSet<>(dirtySegments);
+        keys.addAll(failedSegments);
+        keys.addAll(segments.getRestored()); // Replace the old backup copy with a good file
+        dirtySegments.clear();
+        failedSegments.clear();
+
+        Map<String, List<Transaction>> rowsByKey = new HashMap<>();
+        for (String key : keys) rowsByKey.put(key, new ArrayList<>());
+        homeSegment.clear();
+        for (Transaction tx : transactions) {
+            String key = LedgerSegments.keyOf(tx.getDate());
+            homeSegment.put(tx.getId(), key);
+            // Once it's in the segment file, paging that month in mustn't load it twice
+            if (tx.getDate() != null && unloadedMonths.contains(YearMonth.from(tx.getDate()))) skipIds.add(tx.getId());
+            List<Transaction> rows = rowsByKey.get(key);
+            if (rows != null) rows.add(tx.copy());
+        }
+        Set<String> keepOnDisk = new HashSet<>();
+        for (String key : keys) {
+            if (isUnloaded(key)) keepOnDisk.add(key);
+        }
+        Set<Long> skip = keepOnDisk.isEmpty() ? Set.of() : new HashSet<>(skipIds);
+        long next = nextId;
+
+        return () -> {
+            try {
+                for (Map.Entry<String, List<Transaction>> e : rowsByKey.entrySet()) {
+                    List<Transaction> rows = e.getValue();
+                    LedgerFile.Mapped onDisk = keepOnDisk.contains(e.getKey()) ? segments.open(e.getKey()) : null;
+                    if (onDisk != null) {
+                        rows = onDisk.materialize((id, day) -> !skip.contains(id));
+                        rows.addAll(e.getValue());
+                    }
+                    segments.write(e.getKey(), rows);
+                    segments.getRestored().remove(e.getKey());
+                }
+                segments.writeManifest(next);
+            } catch (IOException e) {
+                // The journal is kept, so try these months again next time
+                failedSegments.addAll(rowsByKey.keySet());
+                throw e;
+            } finally {
+                compactionQueued.set(false);
             }
-        } catch (Exception e) {
-            System.out.println("DataStore: Could not load data. " + e.getMessage());
+            System.out.println("DataStore: compacted " + rowsByKey.size() + " segment(s) in " + LEDGER_DIR);
+        };
+    }
+
+    private List<Transaction> memoryCopy() {
+        List<Transaction> copy = new ArrayList<>(transactions.size());
+        for (Transaction tx : transactions) copy.add(tx.copy());
+        return copy;
+    }
+
+    // Every row, including history that was never paged in
+    private List<Transaction> allRowsCopy() {
+        List<Transaction> rows = new ArrayList<>();
+        for (List<Transaction> part : scanHistory(TransactionQuery.all(),
+                (month, seg) -> seg.materialize((id, day) -> !skipIds.contains(id)))) {
+            rows.addAll(part);
         }
+        rows.addAll(memoryCopy());
+        return rows;
+    }
+
+    /**
+     * Loads the full ledger into memory.
+     * @return false if there was nothing saved yet (first run).
+     */
+    public boolean load() throws IOException {
+        return load(0);
+    }
+
+    /**
+     * Loads the segments of the recent months and replays the journal on
+     * top of them. A single-file ledger from an older version (binary or
+     * Java-serialized) is read whole once and split into segments.
+     * A damaged segment is moved aside and the backup from the previous
+     * compaction is used instead (see isRestoredFromBackup()).
+     * @param recentMonths months (including the current one) to keep in the
+     *                     list; older months are paged in on demand. 0 = all.
+     * @return false if there was nothing saved yet (first run).
+     * @throws IOException if a segment is damaged and there is no usable
+     *                     backup. Nothing is overwritten in that case.
+     */
+    public boolean load(int recentMonths) throws IOException {
+        Path dataFile = Path.of(DATA_FILE);
+        boolean migrate = !segments.exists()
+                && (Files.exists(dataFile) || Files.exists(LedgerFile.backupOf(dataFile)));
+        if (!segments.exists() && !migrate && !Files.exists(Path.of(JOURNAL_FILE))) return false;
+        segments.discardIncomplete();
+
+        LinkedHashMap<Long, Transaction> rows = new LinkedHashMap<>();
+        Set<Long> touched = new HashSet<>();
+        YearMonth first = recentMonths > 0 ? YearMonth.now().minusMonths(recentMonths - 1) : null;
+        long maxId = 0;
+        restoredFromBackup = false;
+        homeSegment.clear();
+        dirtySegments.clear();
+        unloadedMonths.clear();
+        skipIds.clear();
+
+        if (migrate) {
+            List<Transaction> savedList = readDataFile(dataFile);
+            for (Transaction tx : savedList) maxId = Math.max(maxId, tx.getId());
+            for (Transaction tx : savedList) {
+                // Files written before the journal existed have no ids yet
+                if (tx.getId() == 0) tx.setId(++maxId);
+                rows.put(tx.getId(), tx);
+                dirtySegments.add(LedgerSegments.keyOf(tx.getDate()));
+            }
+        } else if (segments.exists()) {
+            List<String> keys = new ArrayList<>();
+            keys.add(LedgerSegments.UNDATED);
+            for (YearMonth month : segments.months()) {
+                if (first != null && month.isBefore(first)) unloadedMonths.add(month);
+                else keys.add(month.toString());
+            }
+            List<List<Transaction>> parts = readSegments(keys);
+            for (int i = 0; i < keys.size(); i++) {
+                for (Transaction tx : parts.get(i)) {
+                    String home = homeSegment.put(tx.getId(), keys.get(i));
+                    // In two months at once: a crash in the middle of a compaction
+                    if (home != null) dirtySegments.add(home);
+                    rows.put(tx.getId(), tx);
+                }
+            }
+            maxId = segments.readNextId() - 1;
+        }
+
+        journal.replay(rows, touched);
+        for (Long id : touched) {
+            String home = homeSegment.get(id);
+            if (home != null) dirtySegments.add(home);
+            Transaction tx = rows.get(id);
+            if (tx != null) dirtySegments.add(LedgerSegments.keyOf(tx.getDate()));
+        }
+        if (!unloadedMonths.isEmpty()) {
+            skipIds.addAll(touched);
+            markHistoryTouched(touched);
+        }
+        loadedSince = unloadedMonths.isEmpty() ? null : first.atDay(1);
+        restoredFromBackup |= !segments.getRestored().isEmpty();
+        nextId = Math.max(1, maxId + 1);
+        for (Long id : rows.keySet()) nextId = Math.max(nextId, id + 1);
+
+        loading = true;
+        try {
+            transactions.setAll(rows.values());
+        } finally {
+            loading = false;
+        }
+        pending.clear();
+        aggregates.clearHistory();
+        addHistoryToAggregates();
+        System.out.println("DataStore: loaded " + rows.size() + " transactions from " + (migrate ? DATA_FILE : LEDGER_DIR)
+                + (unloadedMonths.isEmpty() ? "" : " (" + unloadedMonths.size() + " older months left on disk)"));
+
+        journaledSinceCompact = journal.getRecordCount();
+        if (migrate || restoredFromBackup || journal.isTorn() || journaledSinceCompact >= compactThreshold()) {
+            compact();
+        }
+        if (migrate && segments.exists() && Files.exists(dataFile)) {
+            // Kept, but out of the way so it isn't migrated again
+            Path old = dataFile.resolveSibling(DATA_FILE + ".migrated");
+            Files.move(dataFile, old, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("DataStore: split " + DATA_FILE + " into " + LEDGER_DIR + ", old file kept as " + old);
+        }
+        return true;
+    }
+
+    // Totals per month, category and day of the rows left on disk, one scan per month
+    private void addHistoryToAggregates() {
+        for (Map.Entry<YearMonth, LedgerAggregates.History> month : scanHistory(TransactionQuery.all(), (month, seg) -> {
+            LedgerAggregates.History history = new LedgerAggregates.History();
+            seg.forEach((id, amount, day, category, type) -> {
+                if (!skipIds.contains(id)) history.add(category, day, LedgerAggregates.isIncome(type), amount);
+            });
+            return Map.entry(month, history);
+        })) {
+            aggregates.addHistory(month.getKey(), month.getValue());
+        }
+    }
+
+    // Decodes the given segments on all cores; the result is in key order
+    private List<List<Transaction>> readSegments(List<String> keys) throws IOException {
+        try {
+            return keys.parallelStream().map(key -> {
+                try {
+                    LedgerFile.Mapped seg = segments.open(key);
+                    return seg != null ? seg.materialize((id, day) -> true) : List.<Transaction>of();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Journal records for rows whose month wasn't loaded: find which
+    // segments hold the old versions, so the next compaction rewrites them
+    private void markHistoryTouched(Set<Long> touched) {
+        Set<Long> unknown = new HashSet<>(touched);
+        unknown.removeAll(homeSegment.keySet());
+        if (unknown.isEmpty()) return;
+        for (YearMonth month : scanHistory(TransactionQuery.all(), (month, seg) -> {
+            boolean[] found = {false};
+            seg.forEach((id, amount, day, category, type) -> {
+                if (unknown.contains(id)) found[0] = true;
+            });
+            return found[0] ? month : null;
+        })) {
+            dirtySegments.add(month.toString());
+        }
+    }
+
+    // Reads the single-file ledger of older versions, or its backup if it's missing or damaged
+    private List<Transaction> readDataFile(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            Path backup = LedgerFile.backupOf(path);
+            List<Transaction> rows = LedgerFile.read(backup);
+            restoredFromBackup = true;
+            System.out.println("DataStore: " + path + " is missing, restored from " + backup);
+            return rows;
+        }
+        try {
+            return LedgerFile.read(path);
+        } catch (LedgerFile.DamagedFileException e) {
+            System.out.println("DataStore: " + e.getMessage());
+            Path backup = LedgerFile.backupOf(path);
+            if (!Files.exists(backup)) {
+                throw new IOException("The data file is damaged and there is no backup.", e);
+            }
+            try {
+                List<Transaction> rows = LedgerFile.read(backup);
+                restoredFromBackup = true;
+                System.out.println("DataStore: restored from " + backup);
+                return rows;
+            } catch (LedgerFile.DamagedFileException e2) {
+                throw new IOException("The data file and its backup are both damaged.", e2);
+            }
+        }
+    }
+
+    /**
+     * True if the last load() found a data file damaged and used its
+     * backup instead. Changes from before the last compaction may be missing.
+     */
+    public boolean isRestoredFromBackup() {
+        return restoredFromBackup;
+    }
+
+    /**
+     * Pages older transactions into the list so views can show them.
+     * Whole months are loaded, so from is rounded down to the 1st.
+     * @param from earliest date wanted, or null for the whole history.
+     */
+    public void loadHistorySince(LocalDate from) {
+        List<YearMonth> months = monthsBefore(from);
+        if (!months.isEmpty()) addHistory(from, months, readHistory(months, skipIds));
+    }
+
+    /**
+     * Like loadHistorySince(), but the months are decoded on a background
+     * thread; only adding the rows to the list is left for the FX thread.
+     * then runs on the FX thread once they're in (right away if there was
+     * nothing to page in). Call on the FX thread.
+     */
+    public void loadHistorySinceInBackground(LocalDate from, Runnable then) {
+        List<YearMonth> months = monthsBefore(from);
+        if (months.isEmpty()) {
+            then.run();
+            return;
+        }
+        Set<Long> skip = new HashSet<>(skipIds); // Changes on the FX thread
+        HISTORY_EXECUTOR.execute(() -> {
+            List<Transaction> older;
+            try {
+                older = readHistory(months, skip);
+            } catch (RuntimeException e) {
+                System.out.println("DataStore: could not page in older months. " + e);
+                Platform.runLater(then);
+                return;
+            }
+            Platform.runLater(() -> {
+                // Another page-in may have brought some of these months in meanwhile
+                List<YearMonth> still = new ArrayList<>(months);
+                still.retainAll(unloadedMonths);
+                older.removeIf(tx -> tx.getDate() == null || !still.contains(YearMonth.from(tx.getDate()))
+                        || skipIds.contains(tx.getId()));
+                if (!still.isEmpty()) addHistory(from, still, older);
+                then.run();
+            });
+        });
+    }
+
+    // The months still on disk that a page-in from this date needs
+    private List<YearMonth> monthsBefore(LocalDate from) {
+        if (unloadedMonths.isEmpty() || (from != null && !from.isBefore(loadedSince))) return List.of();
+        return new ArrayList<>(from == null
+                ? unloadedMonths : unloadedMonths.tailSet(YearMonth.from(from), true));
+    }
+
+    // Decodes the months on all cores; any thread
+    private List<Transaction> readHistory(List<YearMonth> months, Set<Long> skip) {
+        List<Transaction> older = new ArrayList<>();
+        for (List<Transaction> part : scanMonths(months,
+                (month, seg) -> seg.materialize((id, day) -> !skip.contains(id)))) {
+            older.addAll(part);
+        }
+        return older;
+    }
+
+    // Puts decoded months in front of the list; FX thread
+    private void addHistory(LocalDate from, List<YearMonth> months, List<Transaction> older) {
+        for (Transaction tx : older) homeSegment.put(tx.getId(), LedgerSegments.keyOf(tx.getDate()));
+        for (YearMonth month : months) aggregates.removeHistory(month); // The list adds them back
+
+        loading = true;
+        try {
+            transactions.addAll(0, older); // Older rows go in front, like they were added first
+        } finally {
+            loading = false;
+        }
+        unloadedMonths.removeAll(months);
+        if (unloadedMonths.isEmpty()) {
+            // Everything is in memory now
+            loadedSince = null;
+            skipIds.clear();
+        } else {
+            LocalDate since = from != null ? YearMonth.from(from).atDay(1) : unloadedMonths.last().plusMonths(1).atDay(1);
+            // A page-in that finished first may already reach further back
+            if (loadedSince == null || since.isBefore(loadedSince)) loadedSince = since;
+        }
+        System.out.println("DataStore: paged in " + older.size() + " older transactions from " + months.size() + " months");
+    }
+
+    /**
+     * True while some older months are still only on disk.
+     */
+    public boolean hasUnloadedHistory() {
+        return !unloadedMonths.isEmpty();
+    }
+
+    /**
+     * First date that is fully in the list, or null if everything is loaded.
+     */
+    public LocalDate getLoadedSince() {
+        return hasUnloadedHistory() ? loadedSince : null;
+    }
+
+    // --- TransactionRepository: the loaded list plus the months still on disk ---
+
+    @Override
+    public List<Transaction> find(TransactionQuery query) {
+        List<Transaction> out = new ArrayList<>();
+        for (List<Transaction> part : scanHistory(query, (month, seg) -> {
+            List<Transaction> found = new ArrayList<>();
+            for (Transaction tx : seg.materialize((id, day) -> !skipIds.contains(id))) {
+                if (query.matches(tx)) found.add(tx);
+            }
+            return found;
+        })) {
+            out.addAll(part);
+        }
+        out.addAll(memory.find(query));
+        return out;
+    }
+
+    @Override
+    public long count(TransactionQuery query) {
+        long count = memory.count(query);
+        for (long n : scanHistory(query, (month, seg) -> {
+            long[] c = {0};
+            seg.forEach((id, amount, day, category, type) -> {
+                if (!skipIds.contains(id) && query.matches(day, type, category)) c[0]++;
+            });
+            return c[0];
+        })) {
+            count += n;
+        }
+        return count;
+    }
+
+    @Override
+    public double sum(TransactionQuery query) {
+        double total = memory.sum(query);
+        for (double part : scanHistory(query, (month, seg) -> sumOf(seg, query))) total += part;
+        return total;
+    }
+
+    @Override
+    public Map<String, Double> sumByCategory(TransactionQuery query) {
+        Map<String, Double> totals = memory.sumByCategory(query);
+        for (Map<String, Double> part : scanHistory(query, (month, seg) -> {
+            Map<String, Double> byCategory = new HashMap<>();
+            seg.forEach((id, amount, day, category, type) -> {
+                if (category != null && !skipIds.contains(id) && query.matches(day, type, category)) {
+                    byCategory.merge(category, amount, Double::sum);
+                }
+            });
+            return byCategory;
+        })) {
+            part.forEach((category, amount) -> totals.merge(category, amount, Double::sum));
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<YearMonth, Double> sumByMonth(TransactionQuery query) {
+        Map<YearMonth, Double> totals = memory.sumByMonth(query);
+        // A segment is one month, so each scan adds up to one entry
+        List<Map.Entry<YearMonth, Double>> parts = scanHistory(query,
+                (month, seg) -> Map.entry(month, sumOf(seg, query)));
+        for (Map.Entry<YearMonth, Double> part : parts) {
+            if (part.getValue() != 0) totals.merge(part.getKey(), part.getValue(), Double::sum);
+        }
+        return totals;
+    }
+
+    private double sumOf(LedgerFile.Mapped seg, TransactionQuery query) {
+        double[] total = {0.0};
+        seg.forEach((id, amount, day, category, type) -> {
+            if (!skipIds.contains(id) && query.matches(day, type, category)) total[0] += amount;
+        });
+        return total[0];
+    }
+
+    /**
+     * Runs scan over each unloaded month the query's date range reaches,
+     * one month per core, and returns the non-null results oldest month
+     * first. Call it on the FX thread, so skipIds can't change meanwhile.
+     */
+    private <R> List<R> scanHistory(TransactionQuery query, BiFunction<YearMonth, LedgerFile.Mapped, R> scan) {
+        if (unloadedMonths.isEmpty()) return List.of();
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth from = query.getFrom() != null ? YearMonth.from(query.getFrom()) : null;
+        for (YearMonth month : from != null ? unloadedMonths.tailSet(from, true) : unloadedMonths) {
+            if (query.getTo() != null && !month.atDay(1).isBefore(query.getTo())) break;
+            months.add(month);
+        }
+        return scanMonths(months, scan);
+    }
+
+    private <R> List<R> scanMonths(List<YearMonth> months, BiFunction<YearMonth, LedgerFile.Mapped, R> scan) {
+        return months.parallelStream()
+                .map(month -> {
+                    LedgerFile.Mapped seg = openSegment(month);
+                    return seg != null ? scan.apply(month, seg) : null;
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // A month whose segment can't be read is left out (and reported) rather
+    // than failing the whole query; the damaged file is kept next to it
+    private LedgerFile.Mapped openSegment(YearMonth month) {
+        try {
+            return segments.open(month.toString());
+        } catch (IOException e) {
+            System.out.println("DataStore: skipping " + month + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isUnloaded(String key) {
+        return !key.equals(LedgerSegments.UNDATED) && unloadedMonths.contains(YearMonth.parse(key));
     }
 }
\ No newline at end of file
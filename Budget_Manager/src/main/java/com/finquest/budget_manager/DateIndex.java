@@ -0,0 +1,103 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Income and expense sums per day, for asking what was spent between two
+ * dates (this month, the last 30 days) without looking at transactions.
+ *
+ * byDay is the date-ordered source of truth. Next to it sits a sorted
+ * array of its epoch days with Fenwick trees (binary indexed trees) over
+ * the sums, so any range costs two binary searches and two prefix sums,
+ * O(log days). Changing a day that is already in the array is O(log days)
+ * too; a new day (or one that emptied out) only marks the array stale, and
+ * it's rebuilt from byDay on the next query.
+ *
+ * Undated transactions aren't in here. Owned by LedgerAggregates; FX
+ * thread only.
+ */
+public class DateIndex {
+
+    private static final int INCOME = 0, EXPENSES = 1, ROWS = 2;
+
+    // epoch day -> {income, expenses, rows}
+    private final NavigableMap<Integer, double[]> byDay = new TreeMap<>();
+    private int[] days = new int[0];
+    private double[][] trees = new double[3][1]; // 1-based Fenwick trees over days
+    private boolean stale = false;
+
+    void add(int epochDay, boolean isIncome, double amount, int count) {
+        double[] day = byDay.computeIfAbsent(epochDay, d -> new double[3]);
+        day[isIncome ? INCOME : EXPENSES] += amount;
+        day[ROWS] += count;
+        if (day[ROWS] <= 0) {
+            byDay.remove(epochDay);
+            stale = true;
+            return;
+        }
+        int i = stale ? -1 : Arrays.binarySearch(days, epochDay);
+        if (i < 0) {
+            stale = true;
+            return;
+        }
+        bump(isIncome ? INCOME : EXPENSES, i + 1, amount);
+        bump(ROWS, i + 1, count);
+    }
+
+    /**
+     * Sums for the days in [from, to), like TransactionQuery.between().
+     * Either end may be null.
+     */
+    public LedgerAggregates.Cell between(LocalDate from, LocalDate to) {
+        LedgerAggregates.Cell cell = new LedgerAggregates.Cell();
+        if (from != null && to != null && !to.isAfter(from)) return cell;
+        if (stale) rebuild();
+        int lo = from == null ? 0 : lowerBound((int) from.toEpochDay());
+        int hi = to == null ? days.length : lowerBound((int) to.toEpochDay());
+        cell.income = prefix(INCOME, hi) - prefix(INCOME, lo);
+        cell.expenses = prefix(EXPENSES, hi) - prefix(EXPENSES, lo);
+        cell.rows = (int) Math.round(prefix(ROWS, hi) - prefix(ROWS, lo));
+        return cell;
+    }
+
+    // Index of the first day >= epochDay
+    private int lowerBound(int epochDay) {
+        int i = Arrays.binarySearch(days, epochDay);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    // Sum of the first n days
+    private double prefix(int tree, int n) {
+        double sum = 0;
+        for (int i = n; i > 0; i -= i & -i) sum += trees[tree][i];
+        return sum;
+    }
+
+    private void bump(int tree, int i, double delta) {
+        for (; i < trees[tree].length; i += i & -i) trees[tree][i] += delta;
+    }
+
+    // Lays byDay out as the sorted array again and builds the trees in O(days)
+    private void rebuild() {
+        int n = byDay.size();
+        days = new int[n];
+        trees = new double[3][n + 1];
+        int i = 0;
+        for (Map.Entry<Integer, double[]> e : byDay.entrySet()) {
+            days[i++] = e.getKey();
+            for (int t = 0; t < 3; t++) trees[t][i] = e.getValue()[t];
+        }
+        for (int t = 0; t < 3; t++) {
+            for (int j = 1; j <= n; j++) {
+                int parent = j + (j & -j);
+                if (parent <= n) trees[t][parent] += trees[t][j];
+            }
+        }
+        stale = false;
+    }
+}
@@ -0,0 +1,72 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.util.Locale;
+
+/**
+ * Counts distinct strings (merchants) approximately in 1 KB, as a
+ * HyperLogLog: each string is hashed, the first 10 bits of the hash pick
+ * one of 1024 registers, and the register keeps the longest run of
+ * leading zeros seen in the rest. The harmonic mean of the registers gives
+ * the count to within about 3%; small counts use linear counting instead.
+ * Counters merge by taking the larger of each register.
+ *
+ * Strings are compared ignoring case and surrounding spaces. Not
+ * thread-safe; copy() one to hand it to another thread.
+ */
+public class DistinctCounter {
+
+    private static final int P = 10;
+    private static final int M = 1 << P;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registers = new byte[M];
+
+    public void add(String value) {
+        if (value == null) return;
+        long h = hash(value.strip().toLowerCase(Locale.ROOT));
+        int index = (int) (h >>> (64 - P));
+        // The marker bit stops the count at 64 - P + 1 for an all-zero rest
+        byte rank = (byte) (Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1);
+        if (rank > registers[index]) registers[index] = rank;
+    }
+
+    public void merge(DistinctCounter other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double estimate = ALPHA * M * M / sum;
+        if (estimate <= 2.5 * M && zeros > 0) estimate = M * Math.log((double) M / zeros);
+        return Math.round(estimate);
+    }
+
+    public DistinctCounter copy() {
+        DistinctCounter c = new DistinctCounter();
+        System.arraycopy(registers, 0, c.registers, 0, M);
+        return c;
+    }
+
+    // 64-bit FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
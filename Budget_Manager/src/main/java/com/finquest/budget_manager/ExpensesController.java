@@ -11,7 +11,6 @@ import javafx.geometry.Pos;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.ComboBoxTableCell;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent; // <-- NEW IMPORT
@@ -24,7 +23,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
 
-public class ExpensesController implements Initializable {
+public class ExpensesController implements Initializable, ManagedView {
 
     // FXML REFERENCES
     @FXML private StackPane donutChartPane;
@@ -47,8 +46,8 @@ public class ExpensesController implements Initializable {
     @FXML private TextField dateField;
     @FXML private Button addButton;
 
-    private final FilteredList<Transaction> expenseFiltered =
-            new FilteredList<>(DataStore.getInstance().getTransactions(), t -> "Expense".equalsIgnoreCase(t.getType()));
+    // Made on the first activate(), on the FX thread; initialize() may run on the preload thread
+    private FilteredList<Transaction> expenseFiltered;
 
     private final ObservableList<String> expenseCategories = FXCollections.observableArrayList(
             "Food & Dining", "Shopping", "Transportation", "Bills & Utilities",
@@ -58,6 +57,8 @@ public class ExpensesController implements Initializable {
     private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
 
     private BudgetApplication mainApp;
+    // The currency the amounts were drawn in when the view was hidden
+    private String hiddenCurrency;
 
     // --- NEW ---: Budget Listener
     private final BudgetManager.BudgetChangeListener budgetListener = (newBudget) -> {
@@ -73,20 +74,17 @@ public class ExpensesController implements Initializable {
     /**
      * Public setter to inject the main application instance
      */
+    @Override
     public void setMainApplication(BudgetApplication app) {
         this.mainApp = app;
     }
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        CurrencyUtil.addListener(currencyListener);
-        BudgetManager.addListener(budgetListener);
-
         setupColumns();
         setupForm();
 
         if (expenseTableView != null) {
-            expenseTableView.setItems(expenseFiltered);
             expenseTableView.setEditable(true);
 
             // --- NEW: Add context menu and row factory ---
@@ -106,8 +104,6 @@ public class ExpensesController implements Initializable {
             if (dateField != null && (dateField.getText() == null || dateField.getText().isEmpty()))
                 dateField.setText(LocalDate.now().format(DATE_FORMATTER));
         });
-
-        updateTotals();
     }
 
     /**
@@ -165,36 +161,36 @@ public class ExpensesController implements Initializable {
 
     private void setupColumns() {
         // Title Column (Editable)
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
+        titleCol.setCellValueFactory(cd -> cd.getValue().titleProperty());
         titleCol.setCellFactory(TextFieldTableCell.forTableColumn());
         titleCol.setOnEditCommit(event -> {
             Transaction transaction = event.getRowValue();
             transaction.setTitle(event.getNewValue());
-            saveAndRefresh();
+            commitEdit(transaction);
         });
         titleCol.setCellFactory(createAlignedCellFactory(Pos.CENTER_LEFT));
 
         // Category Column (Editable)
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        categoryCol.setCellValueFactory(cd -> cd.getValue().categoryProperty());
         categoryCol.setCellFactory(ComboBoxTableCell.forTableColumn(expenseCategories));
         categoryCol.setOnEditCommit(event -> {
             Transaction transaction = event.getRowValue();
             transaction.setCategory(event.getNewValue());
-            saveAndRefresh();
+            commitEdit(transaction);
         });
         categoryCol.setCellFactory(createAlignedComboBoxCellFactory(Pos.CENTER_LEFT, expenseCategories));
 
         // Date Column (Editable)
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
+        dateCol.setCellValueFactory(cd -> cd.getValue().dateProperty());
         dateCol.setCellFactory(createDateCellFactory(Pos.CENTER_LEFT));
         dateCol.setOnEditCommit(event -> {
             Transaction transaction = event.getRowValue();
             transaction.setDate(event.getNewValue());
-            saveAndRefresh();
+            commitEdit(transaction);
         });
 
         // Amount Column (Editable)
-        amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
+        amountCol.setCellValueFactory(cd -> cd.getValue().amountProperty());
         amountCol.setCellFactory(column -> new TextFieldTableCell<Transaction, Double>(new DoubleStringConverter()) {
             @Override
             public void updateItem(Double item, boolean empty) {
@@ -213,7 +209,7 @@ public class ExpensesController implements Initializable {
         amountCol.setOnEditCommit(event -> {
             Transaction transaction = event.getRowValue();
             transaction.setAmount(event.getNewValue());
-            saveAndRefresh();
+            commitEdit(transaction);
         });
     }
 
@@ -276,7 +272,7 @@ public class ExpensesController implements Initializable {
             Transaction t = new Transaction(title, category, "Expense", amount, date);
 
             DataStore.getInstance().addTransaction(t);
-            saveAndRefresh();
+            saveAndUpdateTotals();
 
             if (transactionTitleField != null) transactionTitleField.clear();
             if (categoryComboBox != null) categoryComboBox.setValue(null);
@@ -297,23 +293,29 @@ public class ExpensesController implements Initializable {
         }
     }
 
-    private void saveAndRefresh() {
+    // Records an in-place edit in the journal, then saves as usual
+    private void commitEdit(Transaction transaction) {
+        DataStore.getInstance().updateTransaction(transaction);
+        saveAndUpdateTotals();
+    }
+
+    // The table's cells are bound to the rows' properties, so only the
+    // totals need updating here
+    private void saveAndUpdateTotals() {
         DataStore.getInstance().save();
         updateTotals();
-        if (expenseTableView != null) {
-            expenseTableView.refresh();
-        }
     }
 
     private void updateTotals() {
-        double totalIncome = 0, totalExpenses = 0;
-        for (Transaction tx : DataStore.getInstance().getTransactions()) {
-            if ("Income".equalsIgnoreCase(tx.getType())) totalIncome += tx.getAmount();
-            else if ("Expense".equalsIgnoreCase(tx.getType())) totalExpenses += tx.getAmount();
-        }
+        // Kept up to date by DataStore as rows change, including history still on disk
+        LedgerAggregates totals = DataStore.getInstance().getAggregates();
+        double totalIncome = totals.getTotalIncome();
+        double totalExpenses = totals.getTotalExpenses();
 
         double currentBudget = BudgetManager.getMonthlyBudget();
-        double left = currentBudget - totalExpenses;
+        // The budget is monthly, so only this month's spending counts against it
+        double spentThisMonth = totals.getCurrentMonth().getExpenses();
+        double left = currentBudget - spentThisMonth;
 
         if (leftToSpendLabel != null) leftToSpendLabel.setText(CurrencyUtil.formatCurrency(left));
         if (monthlyBudgetLabel != null) monthlyBudgetLabel.setText(CurrencyUtil.formatCurrency(currentBudget));
@@ -324,22 +326,7 @@ public class ExpensesController implements Initializable {
 
         if (budgetPieChart != null) {
             double remaining = (left > 0) ? left : 0.0;
-            double spent = totalExpenses;
-            PieChart.Data spentSlice = new PieChart.Data("Spent", spent);
-            PieChart.Data remainingSlice = new PieChart.Data("Remaining", remaining);
-            budgetPieChart.setData(FXCollections.observableArrayList(spentSlice, remainingSlice));
-
-            spentSlice.getNode().setStyle("-fx-pie-color: #E74C3C;");
-            remainingSlice.getNode().setStyle("-fx-pie-color: #2ECC71;"); // Use new green
-
-            double total = spent + remaining;
-            if (total == 0) {
-                spentSlice.setName("Spent (0.0%)");
-                remainingSlice.setName("Remaining (0.0%)");
-            } else {
-                spentSlice.setName(String.format("Spent (%.1f%%)", (spent / total) * 100));
-                remainingSlice.setName(String.format("Remaining (%.1f%%)", (remaining / total) * 100));
-            }
+            ChartUtil.setBudgetDonut(budgetPieChart, spentThisMonth, remaining);
         }
     }
 
@@ -359,11 +346,30 @@ public class ExpensesController implements Initializable {
         a.showAndWait();
     }
 
-    public void dispose() {
-        try {
-            CurrencyUtil.removeListener(currencyListener);
-            BudgetManager.removeListener(budgetListener);
-        } catch (Exception ignored) {}
+    /**
+     * Listens for currency and budget changes while the view is shown,
+     * and catches up on the ones it missed while it wasn't.
+     */
+    @Override
+    public void activate() {
+        CurrencyUtil.addListener(currencyListener);
+        BudgetManager.addListener(budgetListener);
+        if (expenseFiltered == null) {
+            expenseFiltered = new FilteredList<>(DataStore.getInstance().getTransactions(), t -> t.getKind() == TransactionKind.EXPENSE);
+            if (expenseTableView != null) expenseTableView.setItems(expenseFiltered);
+        }
+        updateTotals();
+        // Edits redraw their own cells; only a new currency means redrawing every amount
+        if (expenseTableView != null && hiddenCurrency != null && !hiddenCurrency.equals(CurrencyUtil.getCurrencyCode())) {
+            expenseTableView.refresh();
+        }
+    }
+
+    @Override
+    public void deactivate() {
+        CurrencyUtil.removeListener(currencyListener);
+        BudgetManager.removeListener(budgetListener);
+        hiddenCurrency = CurrencyUtil.getCurrencyCode();
     }
 
     // --- NEW: Called when the root VBox is clicked. ---
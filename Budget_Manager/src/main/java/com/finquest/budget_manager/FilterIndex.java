@@ -0,0 +1,531 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bitmap indexes over the loaded transactions, for the table filters in
+ * the Transactions and Reports views.
+ *
+ * Every row gets a slot, and there is a RowBitmap of slots per
+ * TransactionKind, per category, per month (undated rows are in
+ * none) and per amount bucket (amounts in cents, bucketed by powers of two). A
+ * Criteria turns into one bitmap per criterion - the months in a date
+ * range or the categories in a set are or()ed together, and a search's
+ * hits from the SearchIndex are mapped to slots - and those are and()ed,
+ * smallest first. Only the slots left are looked at: a date range that
+ * doesn't start and end on a month boundary and an amount range are
+ * checked on those rows alone.
+ *
+ * A view shows a Selection: the matching rows as a list of their own,
+ * in the same order as DataStore's list (like a FilteredList over it).
+ * setCriteria() fills it from the bitmaps; after that, rows added,
+ * removed or edited (update()) are checked one at a time and put in
+ * their place, so the table keeps its scroll position and selection.
+ * Slots are reused and don't say where a row is in the list, so each slot
+ * also has an order key: keys grow along the list, and a row inserted
+ * between two others gets a key between theirs (all keys are handed out
+ * again in the rare case there's no room). The index follows DataStore's
+ * list like SearchIndex does. FX thread only.
+ */
+public class FilterIndex {
+
+    private static final int BUCKETS = 64;
+    private static final long ORDER_GAP = 1L << 16; // Between the order keys of neighbours
+    private static final long NO_ORDER = Long.MIN_VALUE;
+
+    /**
+     * What a Selection should show. Every criterion left unset matches
+     * everything; the ones that are set must all match.
+     */
+    public static final class Criteria {
+        private TransactionKind kind;
+        private Set<String> categories;
+        private LocalDate from, to;
+        private Double min, max;
+        private SearchIndex searchIndex;
+        private String query; // Normalized, never empty when set
+
+        public static Criteria all() {
+            return new Criteria();
+        }
+
+        public Criteria kind(TransactionKind kind) {
+            this.kind = kind;
+            return this;
+        }
+
+        /**
+         * Only rows in one of these categories.
+         */
+        public Criteria categories(Collection<String> names) {
+            this.categories = names == null ? null : new LinkedHashSet<>(names);
+            return this;
+        }
+
+        /**
+         * Only rows dated in [from, to), like TransactionQuery.between().
+         * Either end may be null; as soon as one is set, undated rows
+         * don't match.
+         */
+        public Criteria between(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * Only rows with an amount in [min, max]. Either end may be null.
+         */
+        public Criteria amountBetween(Double min, Double max) {
+            this.min = min;
+            this.max = max;
+            return this;
+        }
+
+        /**
+         * Only rows whose title or category contains the query, ignoring
+         * case. A blank query matches everything.
+         */
+        public Criteria search(SearchIndex index, String query) {
+            String q = SearchIndex.normalize(query);
+            this.searchIndex = q.isEmpty() ? null : index;
+            this.query = q.isEmpty() ? null : q;
+            return this;
+        }
+
+        private boolean hasDateRange() {
+            return from != null || to != null;
+        }
+
+        // Whether the month bitmaps alone answer the date range
+        private boolean monthAligned() {
+            return (from == null || from.getDayOfMonth() == 1) && (to == null || to.getDayOfMonth() == 1);
+        }
+
+        /**
+         * The same rule for a single row, for rows that change one at a time.
+         */
+        public boolean matches(Transaction tx) {
+            if (kind != null && tx.getKind() != kind) return false;
+            if (categories != null && !categories.contains(tx.getCategory())) return false;
+            if (query != null && !SearchIndex.matches(tx, query)) return false;
+            return matchesDetail(tx);
+        }
+
+        // The criteria the bitmaps only narrow down
+        private boolean matchesDetail(Transaction tx) {
+            if (hasDateRange()) {
+                LocalDate date = tx.getDate();
+                if (date == null) return false;
+                if (from != null && date.isBefore(from)) return false;
+                if (to != null && !date.isBefore(to)) return false;
+            }
+            if (min != null && tx.getAmount() < min) return false;
+            return max == null || tx.getAmount() <= max;
+        }
+    }
+
+    /**
+     * The rows matching a Criteria, kept up to date. The index only holds
+     * it weakly, like FilteredList's listener on its source, so a view
+     * that is thrown away without dispose() doesn't leak it.
+     */
+    public final class Selection {
+        private final ObservableList<Transaction> rows = FXCollections.observableArrayList();
+        private final Set<Transaction> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Criteria criteria = Criteria.all();
+
+        private Selection() {
+        }
+
+        public ObservableList<Transaction> getRows() {
+            return rows;
+        }
+
+        public Criteria getCriteria() {
+            return criteria;
+        }
+
+        /**
+         * Shows the rows matching the criteria, in list order.
+         */
+        public void setCriteria(Criteria criteria) {
+            this.criteria = criteria;
+            List<Transaction> matching = select(criteria);
+            members.clear();
+            members.addAll(matching);
+            rows.setAll(matching);
+        }
+
+        public void dispose() {
+            selections.removeIf(ref -> ref.get() == null || ref.get() == this);
+        }
+
+        private void removed(Set<Transaction> gone) {
+            if (!members.removeAll(gone)) return;
+            rows.removeIf(gone::contains);
+        }
+
+        // The added rows are in list order; runs of them that go in the
+        // same place are inserted with one addAll()
+        private void added(List<Transaction> added) {
+            List<Transaction> run = new ArrayList<>();
+            int at = -1;
+            for (Transaction tx : added) {
+                if (!criteria.matches(tx) || !members.add(tx)) continue;
+                int i = insertionPoint(tx);
+                if (!run.isEmpty() && i != at) {
+                    rows.addAll(at, run);
+                    i += run.size();
+                    run.clear();
+                }
+                at = i;
+                run.add(tx);
+            }
+            if (!run.isEmpty()) rows.addAll(at, run);
+        }
+
+        private void updated(Transaction tx, boolean kindChanged) {
+            boolean match = criteria.matches(tx);
+            if (match && members.add(tx)) rows.add(insertionPoint(tx), tx);
+            else if (!match && members.remove(tx)) rows.remove(tx);
+            else if (match && kindChanged) {
+                // Cells bind to the row's properties, but the amount's sign and
+                // colour follow its kind; replacing the row redraws just that row
+                int i = rows.indexOf(tx);
+                if (i >= 0) rows.set(i, tx);
+            }
+        }
+
+        // Where a row not shown yet goes, by binary search on the order keys
+        private int insertionPoint(Transaction tx) {
+            long key = orderOf(tx);
+            int lo = 0, hi = rows.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (orderOf(rows.get(mid)) < key) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private void reorder() {
+            rows.sort(listOrder);
+        }
+    }
+
+    private final ObservableList<Transaction> source;
+    private final Comparator<Transaction> listOrder = Comparator.comparingLong(this::orderOf);
+
+    private final Map<Long, Integer> slotOf = new HashMap<>(); // Transaction id -> slot
+    private Transaction[] views = new Transaction[64];
+    // What each slot is filed under, to take it out again after an edit
+    private int[] kindOf = new int[64];
+    private int[] categoryOf = new int[64];
+    private int[] monthOf = new int[64]; // Months since year 0, or NO_MONTH
+    private int[] bucketOf = new int[64];
+    private long[] orderOf = new long[64]; // Order key, see the class comment
+    private int[] free = new int[16];
+    private int freeCount = 0;
+    private int end = 0;
+
+    private static final int NO_MONTH = Integer.MIN_VALUE;
+
+    private final RowBitmap live = new RowBitmap();
+    private final RowBitmap[] byKind = new RowBitmap[TransactionKind.values().length];
+    private RowBitmap[] byCategory = new RowBitmap[0]; // By Category id
+    private final NavigableMap<Integer, RowBitmap> byMonth = new TreeMap<>();
+    private final RowBitmap[] byBucket = new RowBitmap[BUCKETS];
+    private final List<WeakReference<Selection>> selections = new ArrayList<>();
+
+    public FilterIndex(ObservableList<Transaction> transactions) {
+        this.source = transactions;
+        for (int i = 0; i < byKind.length; i++) byKind[i] = new RowBitmap();
+        for (int i = 0; i < BUCKETS; i++) byBucket[i] = new RowBitmap();
+        transactions.addListener(this::onChanged);
+        for (Transaction tx : transactions) add(tx);
+        renumber();
+        System.out.println("FilterIndex: indexed " + slotOf.size() + " transactions, " + byMonth.size() + " months");
+    }
+
+    /**
+     * A new Selection showing every row; give it Criteria to narrow it.
+     */
+    public Selection newSelection() {
+        Selection selection = new Selection();
+        selections.add(new WeakReference<>(selection));
+        selection.setCriteria(Criteria.all());
+        return selection;
+    }
+
+    /**
+     * Re-files a transaction that was changed in place, and lets the
+     * selections check it again.
+     */
+    public void update(Transaction tx) {
+        Integer slot = slotOf.get(tx.getId());
+        boolean kindChanged = false;
+        if (slot == null) {
+            add(tx);
+        } else {
+            kindChanged = kindOf[slot] != tx.getKind().ordinal();
+            unindex(slot);
+            index(slot, tx);
+        }
+        for (Selection s : liveSelections()) s.updated(tx, kindChanged);
+    }
+
+    /**
+     * The rows matching the criteria, in list order.
+     */
+    public List<Transaction> select(Criteria c) {
+        List<RowBitmap> parts = new ArrayList<>();
+        if (c.kind != null) parts.add(byKind[c.kind.ordinal()]);
+        if (c.categories != null) {
+            RowBitmap any = new RowBitmap();
+            for (String name : c.categories) {
+                Category category = Category.find(name);
+                if (category != null && category.getId() < byCategory.length && byCategory[category.getId()] != null) {
+                    any = any.or(byCategory[category.getId()]);
+                }
+            }
+            parts.add(any);
+        }
+        if (c.hasDateRange()) {
+            int lo = c.from != null ? monthKey(c.from) : Integer.MIN_VALUE + 1;
+            int hi = c.to != null ? monthKey(c.to.minusDays(1)) : Integer.MAX_VALUE;
+            RowBitmap any = new RowBitmap();
+            if (lo <= hi) {
+                for (RowBitmap month : byMonth.subMap(lo, true, hi, true).values()) any = any.or(month);
+            }
+            parts.add(any);
+        }
+        if (c.min != null || c.max != null) {
+            int lo = c.min != null ? bucket(c.min) : 0;
+            int hi = c.max != null ? bucket(c.max) : BUCKETS - 1;
+            RowBitmap any = new RowBitmap();
+            for (int b = lo; b <= hi; b++) {
+                if (!byBucket[b].isEmpty()) any = any.or(byBucket[b]);
+            }
+            parts.add(any);
+        }
+        if (c.query != null) {
+            RowBitmap found = new RowBitmap();
+            for (long id : c.searchIndex.matchingIds(c.query)) {
+                Integer slot = slotOf.get(id);
+                if (slot != null) found.add(slot);
+            }
+            parts.add(found);
+        }
+
+        // Smallest first, so every and() has less to look at
+        parts.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RowBitmap hits = parts.isEmpty() ? live : parts.get(0);
+        for (int i = 1; i < parts.size() && !hits.isEmpty(); i++) hits = hits.and(parts.get(i));
+
+        boolean exact = c.hasDateRange() && !c.monthAligned() || c.min != null || c.max != null;
+        int[] slots = new int[hits.cardinality()];
+        int[] n = {0};
+        hits.forEach(slot -> {
+            if (!exact || c.matchesDetail(views[slot])) slots[n[0]++] = slot;
+        });
+        return inListOrder(slots, n[0]);
+    }
+
+    // The rows in these slots sorted by their order keys. The keys are
+    // distinct, so each row's place is the rank of its key.
+    private List<Transaction> inListOrder(int[] slots, int n) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) keys[i] = orderOf[slots[i]];
+        Arrays.sort(keys);
+        Transaction[] sorted = new Transaction[n];
+        for (int i = 0; i < n; i++) {
+            int rank = Arrays.binarySearch(keys, orderOf[slots[i]]);
+            if (sorted[rank] != null) {
+                // Two rows share a key (shouldn't happen); sort them the slow way
+                List<Transaction> out = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) out.add(views[slots[j]]);
+                out.sort(listOrder);
+                return out;
+            }
+            sorted[rank] = views[slots[i]];
+        }
+        return Arrays.asList(sorted);
+    }
+
+    // Every slot is filed first, then the new rows get their order keys
+    // (their neighbours may come in a later part of the same change), and
+    // only then are the selections told
+    private void onChanged(ListChangeListener.Change<? extends Transaction> change) {
+        Set<Transaction> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<int[]> addedRanges = new ArrayList<>();
+        boolean permutated = false;
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                permutated = true;
+                continue;
+            }
+            for (Transaction tx : change.getRemoved()) {
+                Integer slot = slotOf.remove(tx.getId());
+                if (slot != null) release(slot);
+                gone.add(tx);
+            }
+            if (change.wasAdded()) {
+                for (Transaction tx : change.getAddedSubList()) add(tx);
+                addedRanges.add(new int[]{change.getFrom(), change.getTo()});
+            }
+        }
+
+        List<Transaction> added = new ArrayList<>();
+        boolean roomy = true;
+        for (int[] range : addedRanges) {
+            if (roomy) roomy = order(range[0], range[1]);
+            added.addAll(source.subList(range[0], range[1]));
+        }
+        if (permutated || !roomy) renumber();
+        for (Selection s : liveSelections()) {
+            if (!gone.isEmpty()) s.removed(gone);
+            if (permutated) s.reorder();
+            if (!added.isEmpty()) s.added(added);
+        }
+    }
+
+    private long orderOf(Transaction tx) {
+        Integer slot = slotOf.get(tx.getId());
+        return slot != null ? orderOf[slot] : NO_ORDER;
+    }
+
+    // Gives the new rows at [from, to) of the list keys between those of
+    // the nearest rows around them that have one, leaving room for any new
+    // rows after them that don't have one yet; false if there's no room
+    private boolean order(int from, int to) {
+        long lo = from > 0 ? orderOf(source.get(from - 1)) : NO_ORDER;
+        int next = to;
+        while (next < source.size() && orderOf(source.get(next)) == NO_ORDER) next++;
+        long hi = next < source.size() ? orderOf(source.get(next)) : NO_ORDER;
+        int n = to - from;
+        long first, step;
+        if (lo == NO_ORDER && hi == NO_ORDER) {
+            first = 0;
+            step = ORDER_GAP;
+        } else if (hi == NO_ORDER) {
+            first = lo + ORDER_GAP;
+            step = ORDER_GAP;
+        } else if (lo == NO_ORDER) {
+            first = hi - (next - from) * ORDER_GAP;
+            step = ORDER_GAP;
+        } else {
+            step = (hi - lo) / (next - from + 1);
+            if (step < 1) return false;
+            first = lo + step;
+        }
+        for (int i = 0; i < n; i++) orderOf[slotOf.get(source.get(from + i).getId())] = first + i * step;
+        return true;
+    }
+
+    // Hands out every key again, evenly spaced in list order
+    private void renumber() {
+        long key = 0;
+        for (Transaction tx : source) {
+            Integer slot = slotOf.get(tx.getId());
+            if (slot != null) orderOf[slot] = key;
+            key += ORDER_GAP;
+        }
+    }
+
+    // The selections still in use; drops the ones that were collected
+    private List<Selection> liveSelections() {
+        List<Selection> out = new ArrayList<>(selections.size());
+        selections.removeIf(ref -> {
+            Selection s = ref.get();
+            if (s != null) out.add(s);
+            return s == null;
+        });
+        return out;
+    }
+
+    private void add(Transaction tx) {
+        Integer old = slotOf.get(tx.getId());
+        if (old != null) release(old); // Same row added twice; index it once
+        int slot = freeCount > 0 ? free[--freeCount] : end++;
+        if (slot >= views.length) grow();
+        slotOf.put(tx.getId(), slot);
+        orderOf[slot] = NO_ORDER; // Set by order() once the whole change is in
+        index(slot, tx);
+    }
+
+    private void release(int slot) {
+        unindex(slot);
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = slot;
+    }
+
+    private void index(int slot, Transaction tx) {
+        views[slot] = tx;
+        kindOf[slot] = tx.getKind().ordinal();
+        categoryOf[slot] = tx.getCategoryInfo().getId();
+        monthOf[slot] = tx.getDate() != null ? monthKey(tx.getDate()) : NO_MONTH;
+        bucketOf[slot] = bucket(tx.getAmount());
+
+        live.add(slot);
+        byKind[kindOf[slot]].add(slot);
+        if (categoryOf[slot] >= byCategory.length) byCategory = Arrays.copyOf(byCategory, Category.count());
+        if (byCategory[categoryOf[slot]] == null) byCategory[categoryOf[slot]] = new RowBitmap();
+        byCategory[categoryOf[slot]].add(slot);
+        if (monthOf[slot] != NO_MONTH) byMonth.computeIfAbsent(monthOf[slot], m -> new RowBitmap()).add(slot);
+        byBucket[bucketOf[slot]].add(slot);
+    }
+
+    private void unindex(int slot) {
+        if (views[slot] == null) return;
+        views[slot] = null;
+        live.remove(slot);
+        byKind[kindOf[slot]].remove(slot);
+        byCategory[categoryOf[slot]].remove(slot);
+        if (monthOf[slot] != NO_MONTH) {
+            RowBitmap month = byMonth.get(monthOf[slot]);
+            month.remove(slot);
+            if (month.isEmpty()) byMonth.remove(monthOf[slot]);
+        }
+        byBucket[bucketOf[slot]].remove(slot);
+    }
+
+    private void grow() {
+        int n = views.length * 2;
+        views = Arrays.copyOf(views, n);
+        kindOf = Arrays.copyOf(kindOf, n);
+        categoryOf = Arrays.copyOf(categoryOf, n);
+        monthOf = Arrays.copyOf(monthOf, n);
+        bucketOf = Arrays.copyOf(bucketOf, n);
+        orderOf = Arrays.copyOf(orderOf, n);
+    }
+
+    private static int monthKey(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    // Bit length of the amount in cents; zero and negative amounts are bucket 0
+    private static int bucket(double amount) {
+        long cents = Math.round(amount * 100);
+        return cents <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(cents);
+    }
+}
@@ -0,0 +1,67 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Answers queries by scanning a list of transactions that's already in
+ * memory. The list is read live, so it always reflects the latest edits.
+ */
+public class InMemoryTransactionRepository implements TransactionRepository {
+
+    private final List<Transaction> rows;
+
+    public InMemoryTransactionRepository(List<Transaction> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public List<Transaction> find(TransactionQuery query) {
+        List<Transaction> out = new ArrayList<>();
+        for (Transaction tx : rows) {
+            if (query.matches(tx)) out.add(tx);
+        }
+        return out;
+    }
+
+    @Override
+    public long count(TransactionQuery query) {
+        long count = 0;
+        for (Transaction tx : rows) {
+            if (query.matches(tx)) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public double sum(TransactionQuery query) {
+        double total = 0.0;
+        for (Transaction tx : rows) {
+            if (query.matches(tx)) total += tx.getAmount();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Double> sumByCategory(TransactionQuery query) {
+        Map<String, Double> totals = new HashMap<>();
+        for (Transaction tx : rows) {
+            if (tx.getCategory() != null && query.matches(tx)) totals.merge(tx.getCategory(), tx.getAmount(), Double::sum);
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<YearMonth, Double> sumByMonth(TransactionQuery query) {
+        Map<YearMonth, Double> totals = new TreeMap<>();
+        for (Transaction tx : rows) {
+            if (tx.getDate() != null && query.matches(tx)) totals.merge(YearMonth.from(tx.getDate()), tx.getAmount(), Double::sum);
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,256 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Repository backed by an embedded H2 database, so range filters and
+ * GROUP BYs run as SQL on an index instead of in the UI layer.
+ *
+ * The ledger segments + journal stay the source of truth. The database is
+ * kept up to date as a mirror of the journal (see PersistenceWriter.Mirror)
+ * and is rebuilt from DataStore whenever it's out of step.
+ */
+public class JdbcTransactionRepository implements TransactionRepository, PersistenceWriter.Mirror {
+
+    public static final String DEFAULT_URL = "jdbc:h2:./finquest_db";
+    private static final String COLUMNS = "(id, title, category, type, amount, tx_date)";
+
+    private final Connection connection;
+
+    private JdbcTransactionRepository(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Opens (or creates) the database and makes sure the table exists.
+     * type_key is the kind upper-cased by the database itself, so the
+     * case-insensitive kind filter can use an index (older databases get
+     * the column and index added here; H2 fills it in for existing rows).
+     */
+    public static JdbcTransactionRepository open(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS transactions ("
+                    + "id BIGINT PRIMARY KEY, title VARCHAR, category VARCHAR, type VARCHAR, "
+                    + "amount DOUBLE PRECISION, tx_date DATE)");
+            st.execute("CREATE INDEX IF NOT EXISTS transactions_date ON transactions(tx_date)");
+            st.execute("ALTER TABLE transactions ADD COLUMN IF NOT EXISTS "
+                    + "type_key VARCHAR GENERATED ALWAYS AS (UPPER(type))");
+            st.execute("CREATE INDEX IF NOT EXISTS transactions_type_date ON transactions(type_key, tx_date)");
+        }
+        System.out.println("JdbcTransactionRepository: opened " + url);
+        return new JdbcTransactionRepository(connection);
+    }
+
+    // --- Mirror (called on the writer thread) ---
+
+    @Override
+    public synchronized void replaceAll(List<Transaction> rows) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try (Statement st = connection.createStatement()) {
+                st.execute("DELETE FROM transactions");
+            }
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO transactions " + COLUMNS + " VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (Transaction tx : rows) {
+                    bindRow(ps, tx.getId(), tx.getTitle(), tx.getCategory(), tx.getType(), tx.getAmount(),
+                            tx.getDate() != null ? Date.valueOf(tx.getDate()) : null);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            connection.commit();
+            System.out.println("JdbcTransactionRepository: rebuilt with " + rows.size() + " transactions");
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Could not rebuild the database", e);
+        } finally {
+            autoCommit();
+        }
+    }
+
+    /**
+     * Applies journal records. Adds and updates are MERGEs, so applying the
+     * same batch twice is harmless.
+     */
+    @Override
+    public synchronized void apply(List<TransactionJournal.Record> records) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement merge = connection.prepareStatement("MERGE INTO transactions " + COLUMNS + " KEY(id) VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM transactions WHERE id = ?")) {
+                // Run in order, flushing one batch before switching to the other statement
+                PreparedStatement last = null;
+                for (TransactionJournal.Record r : records) {
+                    PreparedStatement ps = r.op == TransactionJournal.OP_DELETE ? delete : merge;
+                    if (last != null && last != ps) last.executeBatch();
+                    if (ps == delete) {
+                        delete.setLong(1, r.id);
+                    } else {
+                        bindRow(merge, r.id, r.title, r.category, r.type, r.amount,
+                                r.epochDay == Long.MIN_VALUE ? null : Date.valueOf(LocalDate.ofEpochDay(r.epochDay)));
+                    }
+                    ps.addBatch();
+                    last = ps;
+                }
+                if (last != null) last.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Could not update the database", e);
+        } finally {
+            autoCommit();
+        }
+    }
+
+    // --- Queries ---
+
+    @Override
+    public synchronized List<Transaction> find(TransactionQuery query) {
+        List<Transaction> out = new ArrayList<>();
+        Where where = new Where(query);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT id, title, category, type, amount, tx_date FROM transactions" + where.sql + " ORDER BY tx_date, id")) {
+            where.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Date date = rs.getDate(6);
+                    Transaction tx = new Transaction(rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getDouble(5), date != null ? date.toLocalDate() : null);
+                    tx.setId(rs.getLong(1));
+                    out.add(tx);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return out;
+    }
+
+    @Override
+    public synchronized long count(TransactionQuery query) {
+        return (long) single("COUNT(*)", query);
+    }
+
+    @Override
+    public synchronized double sum(TransactionQuery query) {
+        return single("COALESCE(SUM(amount), 0)", query);
+    }
+
+    @Override
+    public synchronized Map<String, Double> sumByCategory(TransactionQuery query) {
+        Map<String, Double> totals = new HashMap<>();
+        Where where = new Where(query).and("category IS NOT NULL");
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT category, SUM(amount) FROM transactions" + where.sql + " GROUP BY category")) {
+            where.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) totals.put(rs.getString(1), rs.getDouble(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return totals;
+    }
+
+    @Override
+    public synchronized Map<YearMonth, Double> sumByMonth(TransactionQuery query) {
+        Map<YearMonth, Double> totals = new TreeMap<>();
+        Where where = new Where(query).and("tx_date IS NOT NULL");
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT YEAR(tx_date), MONTH(tx_date), SUM(amount) FROM transactions" + where.sql
+                        + " GROUP BY YEAR(tx_date), MONTH(tx_date)")) {
+            where.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) totals.put(YearMonth.of(rs.getInt(1), rs.getInt(2)), rs.getDouble(3));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return totals;
+    }
+
+    // Runs a query that returns one number
+    private double single(String expression, TransactionQuery query) {
+        Where where = new Where(query);
+        try (PreparedStatement ps = connection.prepareStatement("SELECT " + expression + " FROM transactions" + where.sql)) {
+            where.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : 0.0;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0.0;
+        }
+    }
+
+    private static void bindRow(PreparedStatement ps, long id, String title, String category, String type,
+                                double amount, Date date) throws SQLException {
+        ps.setLong(1, id);
+        ps.setString(2, title);
+        ps.setString(3, category);
+        ps.setString(4, type);
+        ps.setDouble(5, amount);
+        if (date != null) ps.setDate(6, date);
+        else ps.setNull(6, Types.DATE);
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void autoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Turns a TransactionQuery into a WHERE clause with the same meaning.
+     */
+    private static final class Where {
+        String sql = "";
+        final List<Object> params = new ArrayList<>();
+
+        Where(TransactionQuery q) {
+            if (q.hasDateRange()) and("tx_date IS NOT NULL");
+            if (q.getFrom() != null) and("tx_date >= ?", Date.valueOf(q.getFrom()));
+            if (q.getTo() != null) and("tx_date < ?", Date.valueOf(q.getTo()));
+            if (q.getType() != null) and("type_key = UPPER(?)", q.getType());
+            if (q.getCategory() != null) and("category = ?", q.getCategory());
+        }
+
+        Where and(String condition, Object... values) {
+            sql += (sql.isEmpty() ? " WHERE " : " AND ") + condition;
+            params.addAll(List.of(values));
+            return this;
+        }
+
+        void bind(PreparedStatement ps) throws SQLException {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+        }
+    }
+}
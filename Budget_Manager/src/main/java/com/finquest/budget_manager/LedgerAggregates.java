@@ -0,0 +1,331 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Running income/expense totals over the whole ledger, overall, per month
+ * and per category, plus a month x category cube (each cell holding both
+ * types) that rollup() adds up for any run of months, and a DateIndex for
+ * sums between two dates (getBetween(), getCurrentMonth(), getLastDays()).
+ *
+ * The totals follow DataStore's list through a ListChangeListener, and
+ * DataStore reports in-place edits through update(). Every change costs a
+ * few hash lookups, so views can ask for totals on every refresh without
+ * scanning anything. Months that are still only on disk are added once
+ * from their segments (addHistory) and taken out again when they're
+ * paged into the list.
+ *
+ * TransactionKind is the one rule for what counts as income; everything
+ * else is an expense. FX thread only.
+ */
+public class LedgerAggregates {
+
+    /**
+     * Income and expense sums for one month or one category.
+     */
+    public static final class Cell {
+        double income;
+        double expenses;
+        int rows;
+
+        public double getIncome() {
+            return income;
+        }
+
+        public double getExpenses() {
+            return expenses;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        void add(boolean isIncome, double amount, int count) {
+            if (isIncome) income += amount;
+            else expenses += amount;
+            rows += count;
+        }
+
+        void add(Cell other) {
+            income += other.income;
+            expenses += other.expenses;
+            rows += other.rows;
+        }
+    }
+
+    /**
+     * The cube added up over a range of months, see rollup().
+     */
+    public static final class Rollup {
+        private final Cell total = new Cell();
+        private final Map<String, Cell> byCategory = new HashMap<>();
+        private final Map<YearMonth, Cell> byMonth = new TreeMap<>();
+
+        public Cell getTotal() {
+            return total;
+        }
+
+        /**
+         * Per category; transactions without one are only in the total.
+         */
+        public Map<String, Cell> getCategories() {
+            return byCategory;
+        }
+
+        /**
+         * Per month, oldest first.
+         */
+        public Map<YearMonth, Cell> getMonths() {
+            return byMonth;
+        }
+
+        private void add(YearMonth month, String category, Cell cell) {
+            total.add(cell);
+            if (category != null) byCategory.computeIfAbsent(category, c -> new Cell()).add(cell);
+            if (month != null) byMonth.computeIfAbsent(month, m -> new Cell()).add(cell);
+        }
+    }
+
+    // What a row added to the totals, so it can be taken out again after
+    // the row has already been edited in place
+    private static final class Contribution {
+        final boolean income;
+        final YearMonth month; // null if undated
+        final int day; // Epoch day, if dated
+        final String category;
+        final double amount;
+
+        Contribution(Transaction tx) {
+            income = tx.isIncome();
+            month = tx.getDate() != null ? YearMonth.from(tx.getDate()) : null;
+            day = tx.getDate() != null ? (int) tx.getDate().toEpochDay() : 0;
+            category = tx.getCategory();
+            amount = tx.getAmount();
+        }
+    }
+
+    /**
+     * What DataStore found in one unloaded month, by category and by epoch
+     * day, both as {income, expenses, income rows, expense rows}.
+     */
+    static final class History {
+        final Map<String, double[]> cells = new HashMap<>();
+        final Map<Integer, double[]> days = new HashMap<>();
+
+        void add(String category, int epochDay, boolean isIncome, double amount) {
+            for (double[] cell : new double[][]{cells.computeIfAbsent(category, c -> new double[4]),
+                    days.computeIfAbsent(epochDay, d -> new double[4])}) {
+                cell[isIncome ? 0 : 1] += amount;
+                cell[isIncome ? 2 : 3]++;
+            }
+        }
+    }
+
+    private final Cell total = new Cell();
+    private final NavigableMap<YearMonth, Cell> byMonth = new TreeMap<>();
+    private final Map<String, Cell> byCategory = new HashMap<>();
+    private final Map<Long, Contribution> rows = new HashMap<>();
+    // month -> category -> cell; undated rows have their own row of cells
+    private final NavigableMap<YearMonth, Map<String, Cell>> cube = new TreeMap<>();
+    private final Map<String, Cell> undatedCube = new HashMap<>();
+    private final DateIndex dates = new DateIndex();
+    // Per month, what addHistory() put in for rows still on disk
+    private final Map<YearMonth, History> history = new HashMap<>();
+
+    public LedgerAggregates(ObservableList<Transaction> transactions) {
+        transactions.addListener(this::onChanged);
+        for (Transaction tx : transactions) add(tx);
+    }
+
+    /**
+     * The income rule, for type strings read straight from disk; rows in
+     * memory have Transaction.isIncome(). See TransactionKind.
+     */
+    public static boolean isIncome(String type) {
+        return TransactionKind.of(type) == TransactionKind.INCOME;
+    }
+
+    public double getTotalIncome() {
+        return total.income;
+    }
+
+    public double getTotalExpenses() {
+        return total.expenses;
+    }
+
+    /**
+     * Totals for one month, or an empty cell if nothing is dated in it.
+     */
+    public Cell getMonth(YearMonth month) {
+        Cell cell = byMonth.get(month);
+        return cell != null ? cell : new Cell();
+    }
+
+    /**
+     * Every month with transactions, oldest first. Read-only view.
+     */
+    public NavigableMap<YearMonth, Cell> getMonths() {
+        return Collections.unmodifiableNavigableMap(byMonth);
+    }
+
+    /**
+     * Totals per category (transactions without one are left out). Read-only view.
+     */
+    public Map<String, Cell> getCategories() {
+        return Collections.unmodifiableMap(byCategory);
+    }
+
+    /**
+     * Adds up the cube for every month from the given one on (null = all
+     * time, undated transactions included). The cost depends on the number
+     * of months and categories in range, not on the number of transactions.
+     */
+    public Rollup rollup(YearMonth from) {
+        Rollup rollup = new Rollup();
+        Map<YearMonth, Map<String, Cell>> months = from == null ? cube : cube.tailMap(from, true);
+        months.forEach((month, cells) -> cells.forEach((category, cell) -> rollup.add(month, category, cell)));
+        if (from == null) undatedCube.forEach((category, cell) -> rollup.add(null, category, cell));
+        return rollup;
+    }
+
+    /**
+     * Sums of the transactions dated in [from, to), either end null for
+     * open-ended. O(log days), see DateIndex.
+     */
+    public Cell getBetween(LocalDate from, LocalDate to) {
+        return dates.between(from, to);
+    }
+
+    /**
+     * Sums for the calendar month we're in; what the monthly budget is
+     * measured against.
+     */
+    public Cell getCurrentMonth() {
+        YearMonth now = YearMonth.now();
+        return dates.between(now.atDay(1), now.plusMonths(1).atDay(1));
+    }
+
+    /**
+     * Sums for the last n days, today included.
+     */
+    public Cell getLastDays(int n) {
+        LocalDate today = LocalDate.now();
+        return dates.between(today.minusDays(n - 1), today.plusDays(1));
+    }
+
+    /**
+     * The month a row is counted in, as of its last add or update(); null
+     * if it's undated or not in here.
+     */
+    YearMonth monthOf(long id) {
+        Contribution c = rows.get(id);
+        return c != null ? c.month : null;
+    }
+
+    /**
+     * Call after a transaction in the list was changed in place.
+     */
+    public void update(Transaction tx) {
+        Contribution old = rows.remove(tx.getId());
+        if (old != null) apply(old, -1);
+        add(tx);
+    }
+
+    private void onChanged(ListChangeListener.Change<? extends Transaction> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) continue;
+            for (Transaction tx : change.getRemoved()) {
+                Contribution old = rows.remove(tx.getId());
+                if (old != null) apply(old, -1);
+            }
+            for (Transaction tx : change.getAddedSubList()) add(tx);
+        }
+    }
+
+    private void add(Transaction tx) {
+        Contribution c = new Contribution(tx);
+        Contribution old = rows.put(tx.getId(), c);
+        if (old != null) apply(old, -1); // Same row added twice; count it once
+        apply(c, 1);
+    }
+
+    private void apply(Contribution c, int sign) {
+        addTo(c.income, c.month, c.category, sign * c.amount, sign);
+        if (c.month != null) dates.add(c.day, c.income, sign * c.amount, sign);
+    }
+
+    private void addTo(boolean income, YearMonth month, String category, double amount, int count) {
+        total.add(income, amount, count);
+        if (total.rows <= 0) total.income = total.expenses = 0;
+        if (month != null) addTo(byMonth, month, income, amount, count);
+        if (category != null) addTo(byCategory, category, income, amount, count);
+        if (month == null) {
+            addTo(undatedCube, category, income, amount, count);
+        } else {
+            Map<String, Cell> cells = cube.computeIfAbsent(month, m -> new HashMap<>());
+            addTo(cells, category, income, amount, count);
+            if (cells.isEmpty()) cube.remove(month);
+        }
+    }
+
+    private static <K> void addTo(Map<K, Cell> cells, K key, boolean income, double amount, int count) {
+        Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+        cell.add(income, amount, count);
+        // Drop empty cells, along with any rounding left in them
+        if (cell.rows <= 0) cells.remove(key);
+    }
+
+    // --- History that isn't in the list ---
+
+    /**
+     * Adds a month that is only on disk. DataStore scans the unloaded
+     * segments after a load and hands over one History per month.
+     */
+    void addHistory(YearMonth month, History h) {
+        removeHistory(month);
+        history.put(month, h);
+        h.cells.forEach((category, cell) -> {
+            if (cell[2] > 0) addTo(true, month, category, cell[0], (int) cell[2]);
+            if (cell[3] > 0) addTo(false, month, category, cell[1], (int) cell[3]);
+        });
+        h.days.forEach((day, cell) -> {
+            if (cell[2] > 0) dates.add(day, true, cell[0], (int) cell[2]);
+            if (cell[3] > 0) dates.add(day, false, cell[1], (int) cell[3]);
+        });
+    }
+
+    /**
+     * Takes a month's history out again; its rows are about to be added
+     * to the list.
+     */
+    void removeHistory(YearMonth month) {
+        History h = history.remove(month);
+        if (h == null) return;
+        h.cells.forEach((category, cell) -> {
+            if (cell[2] > 0) addTo(true, month, category, -cell[0], -(int) cell[2]);
+            if (cell[3] > 0) addTo(false, month, category, -cell[1], -(int) cell[3]);
+        });
+        h.days.forEach((day, cell) -> {
+            if (cell[2] > 0) dates.add(day, true, -cell[0], -(int) cell[2]);
+            if (cell[3] > 0) dates.add(day, false, -cell[1], -(int) cell[3]);
+        });
+    }
+
+    /**
+     * Forgets all history (before a reload).
+     */
+    void clearHistory() {
+        for (YearMonth month : new ArrayList<>(history.keySet())) removeHistory(month);
+    }
+}
@@ -0,0 +1,314 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * The Reports view's insights: the largest expenses, the median and p90
+ * transaction size per category, and the number of distinct merchants
+ * (expense titles) per month.
+ *
+ * Each month keeps a bounded summary of its rows: a QuantileSketch per
+ * category and type, a DistinctCounter of merchants and a heap of its
+ * TOP_N largest expenses. Rows added to the list go straight into their
+ * month. None of these can take a row out again, so removing or editing a
+ * row only marks its month, and marked months are rebuilt the next time
+ * someone asks, from DataStore's own rows for those months. Nothing is
+ * kept per row, so memory grows with the months, not the rows.
+ *
+ * snapshot() copies the months in a period on the FX thread, and the copy
+ * merges them into Insights on any thread (ReportCalculator does it in the
+ * background). Follows DataStore's list like LedgerAggregates; FX thread
+ * only.
+ */
+public class LedgerAnalytics {
+
+    public static final int TOP_N = 10;
+
+    private static final Comparator<Expense> BY_AMOUNT = Comparator.comparingDouble(Expense::getAmount);
+
+    /**
+     * One expense as it was when it was counted.
+     */
+    public static final class Expense {
+        private final String title;
+        private final String category;
+        private final double amount;
+        private final LocalDate date;
+
+        Expense(Transaction tx) {
+            title = tx.getTitle();
+            category = tx.getCategory();
+            amount = tx.getAmount();
+            date = tx.getDate();
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+    }
+
+    /**
+     * How big one category's transactions are.
+     */
+    public static final class CategorySize {
+        private final String category;
+        private final double median;
+        private final double p90;
+        private final long count;
+
+        CategorySize(String category, QuantileSketch sketch) {
+            this.category = category;
+            this.median = sketch.quantile(0.5);
+            this.p90 = sketch.quantile(0.9);
+            this.count = sketch.count();
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public double getMedian() {
+            return median;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * The insights for one period and type filter, see Snapshot.summarize().
+     */
+    public static final class Insights {
+        private final List<Expense> largest;
+        private final List<CategorySize> sizes;
+        private final Map<YearMonth, Long> merchants;
+
+        Insights(List<Expense> largest, List<CategorySize> sizes, Map<YearMonth, Long> merchants) {
+            this.largest = largest;
+            this.sizes = sizes;
+            this.merchants = merchants;
+        }
+
+        /**
+         * Largest first, at most TOP_N.
+         */
+        public List<Expense> getLargestExpenses() {
+            return largest;
+        }
+
+        /**
+         * By category name.
+         */
+        public List<CategorySize> getCategorySizes() {
+            return sizes;
+        }
+
+        /**
+         * Estimated distinct merchants, oldest month first.
+         */
+        public Map<YearMonth, Long> getMerchantsByMonth() {
+            return merchants;
+        }
+    }
+
+    // Everything kept for one month (or for the undated rows)
+    private static final class MonthPart {
+        final Map<String, QuantileSketch> incomeSizes = new HashMap<>();
+        final Map<String, QuantileSketch> expenseSizes = new HashMap<>();
+        final DistinctCounter merchants = new DistinctCounter();
+        final PriorityQueue<Expense> largest = new PriorityQueue<>(BY_AMOUNT); // Smallest on top
+
+        void add(Transaction tx) {
+            if (tx.getCategory() != null) { // Like the category totals, rows without one are left out
+                (tx.isIncome() ? incomeSizes : expenseSizes).computeIfAbsent(tx.getCategory(), c -> new QuantileSketch()).add(tx.getAmount());
+            }
+            if (tx.isIncome()) return;
+            merchants.add(tx.getTitle());
+            offer(largest, new Expense(tx));
+        }
+
+        MonthPart copy() {
+            MonthPart c = new MonthPart();
+            incomeSizes.forEach((category, sketch) -> c.incomeSizes.put(category, sketch.copy()));
+            expenseSizes.forEach((category, sketch) -> c.expenseSizes.put(category, sketch.copy()));
+            c.merchants.merge(merchants);
+            c.largest.addAll(largest);
+            return c;
+        }
+    }
+
+    /**
+     * Copies of the months in a period, safe to read on another thread.
+     */
+    public static final class Snapshot {
+        private final Map<YearMonth, MonthPart> months = new TreeMap<>();
+        private MonthPart undated;
+
+        private Snapshot() {
+        }
+
+        public Insights summarize(boolean showIncome, boolean showExpense) {
+            List<MonthPart> parts = new ArrayList<>(months.values());
+            if (undated != null) parts.add(undated);
+
+            PriorityQueue<Expense> largest = new PriorityQueue<>(BY_AMOUNT);
+            Map<String, QuantileSketch> sizes = new TreeMap<>();
+            for (MonthPart part : parts) {
+                if (showIncome) mergeInto(sizes, part.incomeSizes);
+                if (showExpense) {
+                    mergeInto(sizes, part.expenseSizes);
+                    for (Expense e : part.largest) offer(largest, e);
+                }
+            }
+
+            List<Expense> top = new ArrayList<>(largest);
+            top.sort(BY_AMOUNT.reversed());
+            List<CategorySize> categorySizes = new ArrayList<>();
+            sizes.forEach((category, sketch) -> categorySizes.add(new CategorySize(category, sketch)));
+            Map<YearMonth, Long> merchants = new TreeMap<>();
+            if (showExpense) months.forEach((month, part) -> merchants.put(month, part.merchants.estimate()));
+            return new Insights(top, categorySizes, merchants);
+        }
+
+        private static void mergeInto(Map<String, QuantileSketch> into, Map<String, QuantileSketch> from) {
+            from.forEach((category, sketch) -> into.computeIfAbsent(category, c -> new QuantileSketch()).merge(sketch));
+        }
+    }
+
+    private final NavigableMap<YearMonth, MonthPart> months = new TreeMap<>();
+    private MonthPart undated = new MonthPart();
+    // Months to rebuild before the next snapshot; may hold null for the undated rows
+    private final Set<YearMonth> stale = new HashSet<>();
+    // The loaded rows matching a query, to rebuild months from
+    private final Function<TransactionQuery, List<Transaction>> loadedRows;
+
+    public LedgerAnalytics(ObservableList<Transaction> transactions, Function<TransactionQuery, List<Transaction>> loadedRows) {
+        this.loadedRows = loadedRows;
+        transactions.addListener(this::onChanged);
+        for (Transaction tx : transactions) add(tx);
+    }
+
+    /**
+     * Call after a transaction in the list was changed in place. countedIn
+     * is the month it was in before the edit (null if it was undated).
+     */
+    public void update(Transaction tx, YearMonth countedIn) {
+        stale.add(countedIn);
+        stale.add(monthOf(tx)); // Rebuilt with the row in it, so it isn't added here
+    }
+
+    /**
+     * Copies the months from the given one on (null = all time, undated
+     * rows included), rebuilding any that rows left or changed in first.
+     */
+    public Snapshot snapshot(YearMonth from) {
+        rebuildStale();
+        Snapshot snapshot = new Snapshot();
+        Map<YearMonth, MonthPart> inRange = from == null ? months : months.tailMap(from, true);
+        inRange.forEach((month, part) -> snapshot.months.put(month, part.copy()));
+        if (from == null) snapshot.undated = undated.copy();
+        return snapshot;
+    }
+
+    private void onChanged(ListChangeListener.Change<? extends Transaction> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) continue;
+            // A row's date is the one it was counted under; update() is
+            // told about every edit
+            for (Transaction tx : change.getRemoved()) stale.add(monthOf(tx));
+            if (change.wasRemoved() && change.getList().isEmpty()) {
+                // Everything went (a reload); start over instead of rebuilding
+                months.clear();
+                undated = new MonthPart();
+                stale.clear();
+            }
+            for (Transaction tx : change.getAddedSubList()) add(tx);
+        }
+    }
+
+    private void add(Transaction tx) {
+        YearMonth month = monthOf(tx);
+        if (stale.contains(month)) return; // Counted when the month is rebuilt
+        partFor(month).add(tx);
+    }
+
+    private MonthPart partFor(YearMonth month) {
+        return month == null ? undated : months.computeIfAbsent(month, m -> new MonthPart());
+    }
+
+    // Starts the marked months over from DataStore's rows, with one query
+    // over the span of the dated ones
+    private void rebuildStale() {
+        if (stale.isEmpty()) return;
+        YearMonth first = null, last = null;
+        for (YearMonth month : stale) {
+            if (month == null) {
+                undated = new MonthPart();
+                continue;
+            }
+            months.remove(month);
+            if (first == null || month.isBefore(first)) first = month;
+            if (last == null || month.isAfter(last)) last = month;
+        }
+        if (first != null) {
+            TransactionQuery span = TransactionQuery.all().between(first.atDay(1), last.plusMonths(1).atDay(1));
+            for (Transaction tx : loadedRows.apply(span)) {
+                YearMonth month = monthOf(tx);
+                if (stale.contains(month)) partFor(month).add(tx);
+            }
+        }
+        if (stale.contains(null)) {
+            for (Transaction tx : loadedRows.apply(TransactionQuery.all())) {
+                if (tx.getDate() == null) undated.add(tx);
+            }
+        }
+        stale.clear();
+    }
+
+    private static YearMonth monthOf(Transaction tx) {
+        return tx.getDate() != null ? YearMonth.from(tx.getDate()) : null;
+    }
+
+    // Keeps the TOP_N largest in a min-heap
+    private static void offer(PriorityQueue<Expense> heap, Expense e) {
+        if (heap.size() < TOP_N) {
+            heap.add(e);
+        } else if (e.getAmount() > heap.peek().getAmount()) {
+            heap.poll();
+            heap.add(e);
+        }
+    }
+}
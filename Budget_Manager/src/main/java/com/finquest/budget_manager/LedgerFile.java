@@ -0,0 +1,435 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary snapshot format for the transaction list.
+ *
+ * Layout (all big-endian):
+ *   header  : magic "FQLG", short version, int rowCount,
+ *             category dictionary, type dictionary (int size + strings),
+ *             int CRC32C of everything before it
+ *   groups  : up to GROUP_ROWS rows each, stored column by column:
+ *             int rows, int byteLength, int CRC32C of the column bytes,
+ *             long[] id, double[] amount, int[] epochDay,
+ *             int[] categoryId, short[] typeId, then the titles
+ *
+ * Strings are int-length-prefixed UTF-8. A missing date is NO_DATE and a
+ * missing category/type is NO_ID. Version 1 files (no checksums) and files
+ * written by the old ObjectOutputStream code are still readable.
+ */
+public class LedgerFile {
+
+    static final int MAGIC = 0x46514C47; // "FQLG"
+    static final short VERSION = 2;
+    static final short VERSION_NO_CRC = 1;
+    static final int GROUP_ROWS = 4096;
+    static final int NO_DATE = Integer.MIN_VALUE;
+    static final int NO_ID = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIXED_ROW_BYTES = 8 + 8 + 4 + 4 + 2;
+
+    private LedgerFile() {}
+
+    /**
+     * Replaces the snapshot at target without ever leaving a half-written
+     * file behind: the rows go to a temp file that is fsynced and then
+     * renamed over target in one step, so target always exists. The file
+     * it replaces is kept as backupOf(target), made (as a hard link, or a
+     * copy where links aren't supported) while target is still in place.
+     */
+    public static void writeAtomically(Path target, List<Transaction> rows) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        write(temp, rows);
+        if (Files.exists(target)) keepBackup(target);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target);
+    }
+
+    // Points backupOf(target) at target's current contents without moving target
+    private static void keepBackup(Path target) throws IOException {
+        Path backup = backupOf(target);
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, target);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Where writeAtomically() keeps the previous snapshot. Only a file that
+     * is missing or damaged is ever read back from here.
+     */
+    public static Path backupOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".bak");
+    }
+
+    // Makes the renames themselves durable. Not every platform lets you
+    // open a directory (Windows doesn't), and there it isn't needed anyway.
+    static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+
+    /**
+     * Writes the transactions to the given path in the binary format and
+     * forces them to disk.
+     */
+    public static void write(Path path, List<Transaction> rows) throws IOException {
+        // Build the dictionaries first so every row can refer to them by id
+        Map<String, Integer> categoryIds = new HashMap<>();
+        Map<String, Integer> typeIds = new HashMap<>();
+        List<String> categories = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (Transaction tx : rows) {
+            dictId(tx.getCategory(), categoryIds, categories);
+            dictId(tx.getType(), typeIds, types);
+        }
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(ch);
+            out.putBytes(header(rows.size(), categories, types));
+
+            for (int start = 0; start < rows.size(); start += GROUP_ROWS) {
+                int end = Math.min(rows.size(), start + GROUP_ROWS);
+                writeGroup(out, rows.subList(start, end), categoryIds, typeIds);
+            }
+            out.flush();
+            ch.force(true);
+        }
+    }
+
+    // Header bytes including their trailing CRC
+    private static byte[] header(int rowCount, List<String> categories, List<String> types) {
+        List<byte[]> strings = new ArrayList<>();
+        int length = 10 + 4 + 4 + 4;
+        for (String s : categories) strings.add(s.getBytes(StandardCharsets.UTF_8));
+        for (String s : types) strings.add(s.getBytes(StandardCharsets.UTF_8));
+        for (byte[] b : strings) length += 4 + b.length;
+
+        ByteBuffer b = ByteBuffer.allocate(length);
+        b.putInt(MAGIC).putShort(VERSION).putInt(rowCount);
+        b.putInt(categories.size());
+        for (int i = 0; i < categories.size(); i++) b.putInt(strings.get(i).length).put(strings.get(i));
+        b.putInt(types.size());
+        for (int i = categories.size(); i < strings.size(); i++) b.putInt(strings.get(i).length).put(strings.get(i));
+        b.putInt(crc(b, 0, b.position()));
+        return b.array();
+    }
+
+    private static void writeGroup(Writer out, List<Transaction> group,
+                                   Map<String, Integer> categoryIds, Map<String, Integer> typeIds) throws IOException {
+        int n = group.size();
+        byte[][] titles = new byte[n][];
+        int byteLength = n * FIXED_ROW_BYTES;
+        for (int i = 0; i < n; i++) {
+            String title = group.get(i).getTitle();
+            titles[i] = (title != null ? title : "").getBytes(StandardCharsets.UTF_8);
+            byteLength += 4 + titles[i].length;
+        }
+
+        // Built in memory first so the checksum can go in front of it
+        ByteBuffer b = ByteBuffer.allocate(byteLength);
+        for (Transaction tx : group) b.putLong(tx.getId());
+        for (Transaction tx : group) b.putDouble(tx.getAmount());
+        for (Transaction tx : group) b.putInt(tx.getDate() != null ? (int) tx.getDate().toEpochDay() : NO_DATE);
+        for (Transaction tx : group) b.putInt(lookup(tx.getCategory(), categoryIds));
+        for (Transaction tx : group) b.putShort((short) lookup(tx.getType(), typeIds));
+        for (byte[] title : titles) b.putInt(title.length).put(title);
+
+        out.ensure(12);
+        out.buf.putInt(n).putInt(byteLength).putInt(crc(b, 0, byteLength));
+        out.putBytes(b.array());
+    }
+
+    /**
+     * Reads a snapshot written by write(), or a legacy Java-serialized
+     * ArrayList&lt;Transaction&gt; from before this format existed.
+     * @throws DamagedFileException if a checksum doesn't match.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Transaction> read(Path path) throws IOException {
+        if (isLegacy(path)) {
+            try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(path))) {
+                return (List<Transaction>) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unreadable legacy data file", e);
+            }
+        }
+        return open(ByteBuffer.wrap(Files.readAllBytes(path)), path).materialize((id, day) -> true);
+    }
+
+    /**
+     * Memory-maps a snapshot without turning its rows into objects.
+     * Only the group offsets are worked out (and checksums verified) up
+     * front; rows are decoded when someone asks for them through Mapped.
+     * @throws DamagedFileException if a checksum doesn't match.
+     */
+    public static Mapped map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return open(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), path);
+        }
+    }
+
+    // Parses the header and group table, then checks every group's CRC
+    private static Mapped open(ByteBuffer buf, Path path) throws IOException {
+        try {
+            if (buf.getInt() != MAGIC) throw new DamagedFileException("Not a FINQUEST ledger file: " + path);
+            short version = buf.getShort();
+            if (version != VERSION && version != VERSION_NO_CRC) {
+                throw new IOException("Unsupported ledger version " + version);
+            }
+            boolean checked = version != VERSION_NO_CRC;
+            int rowCount = buf.getInt();
+            String[] categories = readDictionary(buf);
+            String[] types = readDictionary(buf);
+            if (checked) {
+                int headerEnd = buf.position();
+                if (crc(buf, 0, headerEnd) != buf.getInt()) {
+                    throw new DamagedFileException("Header checksum mismatch in " + path);
+                }
+            }
+
+            List<int[]> groups = new ArrayList<>(); // {offset of first column, rows, byteLength, crc}
+            int seen = 0;
+            while (seen < rowCount) {
+                int n = buf.getInt();
+                int byteLength = buf.getInt();
+                int crc = checked ? buf.getInt() : 0;
+                if (n <= 0 || byteLength < n * FIXED_ROW_BYTES || byteLength > buf.remaining()) {
+                    throw new DamagedFileException("Bad row group header in " + path);
+                }
+                groups.add(new int[]{buf.position(), n, byteLength, crc});
+                buf.position(buf.position() + byteLength);
+                seen += n;
+            }
+            if (checked) verify(buf, groups, path);
+            return new Mapped(buf, rowCount, categories, types, groups);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new DamagedFileException("Ledger file is truncated: " + path);
+        }
+    }
+
+    /**
+     * Checks the row groups on all cores. Each group is independent, so a
+     * large ledger costs about one group's worth of hashing per core.
+     */
+    private static void verify(ByteBuffer buf, List<int[]> groups, Path path) throws DamagedFileException {
+        int bad = IntStream.range(0, groups.size()).parallel()
+                .filter(i -> {
+                    int[] g = groups.get(i);
+                    return crc(buf, g[0], g[2]) != g[3];
+                })
+                .findFirst().orElse(-1);
+        if (bad >= 0) {
+            throw new DamagedFileException("Checksum mismatch in row group " + bad + " of " + path);
+        }
+    }
+
+    // CRC32C of buf[offset, offset + length) without moving buf's position
+    private static int crc(ByteBuffer buf, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Thrown when a snapshot fails its integrity checks (bad checksum,
+     * truncated or not a ledger at all), as opposed to an I/O error.
+     */
+    public static class DamagedFileException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public DamagedFileException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Decides, from the fixed-width columns alone, whether a mapped row is
+     * wanted. Rows that are rejected never have their title decoded.
+     */
+    @FunctionalInterface
+    public interface RowFilter {
+        boolean accept(long id, int epochDay);
+    }
+
+    /**
+     * Receives the numeric columns of a mapped row (no objects are created).
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(long id, double amount, int epochDay, String category, String type);
+    }
+
+    /**
+     * A read-only view of a snapshot file, usually memory-mapped.
+     */
+    public static final class Mapped {
+        private final ByteBuffer buf;
+        private final int rowCount;
+        private final String[] categories;
+        private final String[] types;
+        private final List<int[]> groups;
+
+        private Mapped(ByteBuffer buf, int rowCount, String[] categories, String[] types, List<int[]> groups) {
+            this.buf = buf;
+            this.rowCount = rowCount;
+            this.categories = categories;
+            this.types = types;
+            this.groups = groups;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Walks the numeric columns of every row.
+         */
+        public void forEach(RowVisitor visitor) {
+            for (int[] g : groups) {
+                int base = g[0], n = g[1];
+                for (int i = 0; i < n; i++) {
+                    int category = buf.getInt(base + 20 * n + 4 * i);
+                    short type = buf.getShort(base + 24 * n + 2 * i);
+                    visitor.visit(buf.getLong(base + 8 * i),
+                            buf.getDouble(base + 8 * n + 8 * i),
+                            buf.getInt(base + 16 * n + 4 * i),
+                            category == NO_ID ? null : categories[category],
+                            type == NO_ID ? null : types[type]);
+                }
+            }
+        }
+
+        /**
+         * Builds Transaction objects for the rows the filter accepts.
+         */
+        public List<Transaction> materialize(RowFilter filter) {
+            List<Transaction> out = new ArrayList<>();
+            for (int[] g : groups) {
+                int base = g[0], n = g[1];
+                int titlePos = base + FIXED_ROW_BYTES * n;
+                for (int i = 0; i < n; i++) {
+                    int titleLen = buf.getInt(titlePos);
+                    long id = buf.getLong(base + 8 * i);
+                    int day = buf.getInt(base + 16 * n + 4 * i);
+                    if (filter.accept(id, day)) {
+                        byte[] title = new byte[titleLen];
+                        buf.get(titlePos + 4, title);
+                        int category = buf.getInt(base + 20 * n + 4 * i);
+                        short type = buf.getShort(base + 24 * n + 2 * i);
+                        Transaction tx = new Transaction(
+                                new String(title, StandardCharsets.UTF_8),
+                                category == NO_ID ? null : categories[category],
+                                type == NO_ID ? null : types[type],
+                                buf.getDouble(base + 8 * n + 8 * i),
+                                day == NO_DATE ? null : LocalDate.ofEpochDay(day));
+                        tx.setId(id);
+                        out.add(tx);
+                    }
+                    titlePos += 4 + titleLen;
+                }
+            }
+            return out;
+        }
+    }
+
+    /**
+     * True if the file was written by the old ObjectOutputStream-based save.
+     */
+    public static boolean isLegacy(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < 2) return false;
+            ByteBuffer b = readFully(ch, 2);
+            // Java serialization stream magic 0xACED
+            return b.get(0) == (byte) 0xAC && b.get(1) == (byte) 0xED;
+        }
+    }
+
+    private static String[] readDictionary(ByteBuffer buf) {
+        String[] dict = new String[buf.getInt()];
+        for (int i = 0; i < dict.length; i++) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            dict[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dict;
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, int len) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while (b.hasRemaining()) {
+            if (ch.read(b) < 0) throw new IOException("Ledger file is truncated");
+        }
+        b.flip();
+        return b;
+    }
+
+    private static void dictId(String value, Map<String, Integer> ids, List<String> dict) {
+        if (value != null && !ids.containsKey(value)) {
+            ids.put(value, dict.size());
+            dict.add(value);
+        }
+    }
+
+    private static int lookup(String value, Map<String, Integer> ids) {
+        return value == null ? NO_ID : ids.get(value);
+    }
+
+    /**
+     * Small helper that keeps one direct buffer and drains it into the
+     * channel whenever the next value wouldn't fit.
+     */
+    private static final class Writer {
+        final FileChannel ch;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Writer(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                if (!buf.hasRemaining()) flush();
+                int len = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, len);
+                off += len;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+    }
+}
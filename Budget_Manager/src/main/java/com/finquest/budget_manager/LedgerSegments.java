@@ -0,0 +1,228 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ledger on disk as one LedgerFile per month: "2024-05.seg" holds
+ * every transaction dated May 2024, "undated.seg" the ones without a date.
+ * The key is the same yyyy-MM that ReportsController groups by.
+ *
+ * A segment is never changed in place. It's replaced whole (through
+ * LedgerFile.writeAtomically) when an edit reaches its month, so a closed
+ * month's file stays the same for as long as nobody touches it and its
+ * mapping can be cached and shared between threads.
+ *
+ * The manifest is written after the segments of every compaction. A
+ * directory without one was never completely written.
+ */
+public class LedgerSegments {
+
+    public static final String UNDATED = "undated";
+    private static final String SUFFIX = ".seg";
+    private static final String MANIFEST = "manifest";
+
+    private final Path dir;
+    private final Map<String, LedgerFile.Mapped> cache = new ConcurrentHashMap<>();
+    private final Set<String> restored = ConcurrentHashMap.newKeySet();
+
+    public LedgerSegments(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * The segment a transaction with this date belongs to.
+     */
+    public static String keyOf(LocalDate date) {
+        return date == null ? UNDATED : YearMonth.from(date).toString();
+    }
+
+    public static String keyOf(int epochDay) {
+        return epochDay == LedgerFile.NO_DATE ? UNDATED : keyOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * True once a compaction has completely written the directory.
+     */
+    public boolean exists() {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    /**
+     * Moves a directory that has segments but no manifest (a crash during
+     * the very first compaction) out of the way. Whatever it holds is still
+     * in the journal or the old data file.
+     */
+    public void discardIncomplete() throws IOException {
+        if (!Files.isDirectory(dir) || exists()) return;
+        Path aside = dir.resolveSibling(dir.getFileName() + ".incomplete");
+        if (Files.exists(aside)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(aside)) {
+                for (Path file : files) Files.delete(file);
+            }
+            Files.delete(aside);
+        }
+        Files.move(dir, aside);
+        cache.clear();
+        System.out.println("LedgerSegments: incomplete " + dir + " moved to " + aside);
+    }
+
+    /**
+     * The months that have a segment (or only its backup, see open()),
+     * oldest first.
+     */
+    public List<YearMonth> months() throws IOException {
+        Set<YearMonth> months = new TreeSet<>();
+        if (!Files.isDirectory(dir)) return new ArrayList<>(months);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*{" + SUFFIX + "," + SUFFIX + ".bak}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String key = name.substring(0, name.lastIndexOf(SUFFIX));
+                if (key.equals(UNDATED)) continue;
+                try {
+                    months.add(YearMonth.parse(key));
+                } catch (DateTimeParseException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        return new ArrayList<>(months);
+    }
+
+    /**
+     * Maps a segment, or returns the cached mapping. A damaged segment is
+     * moved aside and its backup from the previous compaction is used
+     * (see getRestored()), as is the backup of a segment that's missing.
+     * @return null if neither the segment nor a backup of it exists.
+     * @throws IOException if the segment is damaged and has no usable backup.
+     */
+    public LedgerFile.Mapped open(String key) throws IOException {
+        LedgerFile.Mapped mapped = cache.get(key);
+        if (mapped != null) return mapped;
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            // Segments are never removed (see write()), so only a crash left it like this
+            Path backup = LedgerFile.backupOf(path);
+            if (!Files.exists(backup)) return null;
+            mapped = LedgerFile.map(backup);
+            System.out.println("LedgerSegments: " + path + " is missing, restored from " + backup);
+            restored.add(key);
+            cache.put(key, mapped);
+            return mapped;
+        }
+        try {
+            mapped = LedgerFile.map(path);
+        } catch (LedgerFile.DamagedFileException e) {
+            System.out.println("LedgerSegments: " + e.getMessage());
+            mapped = restoreBackup(path);
+            restored.add(key);
+        }
+        cache.put(key, mapped);
+        return mapped;
+    }
+
+    // Moves the damaged segment out of the way (so the next compaction
+    // can't overwrite it) and falls back to the previous one
+    private LedgerFile.Mapped restoreBackup(Path path) throws IOException {
+        Path damaged = path.resolveSibling(path.getFileName() + ".damaged");
+        Files.move(path, damaged, StandardCopyOption.REPLACE_EXISTING);
+        Path backup = LedgerFile.backupOf(path);
+        if (!Files.exists(backup)) {
+            throw new IOException("The data file is damaged and there is no backup. It was kept as " + damaged);
+        }
+        try {
+            LedgerFile.Mapped mapped = LedgerFile.map(backup);
+            System.out.println("LedgerSegments: restored from " + backup + ", damaged file kept as " + damaged);
+            return mapped;
+        } catch (LedgerFile.DamagedFileException e) {
+            throw new IOException("The data file and its backup are both damaged. They were kept as "
+                    + damaged + " and " + backup, e);
+        }
+    }
+
+    /**
+     * Replaces a segment with the given rows. A month whose rows are all
+     * gone gets an empty segment rather than none, so that a missing file
+     * always means a backup should be used. Safe to call from the writer
+     * thread while other threads read the old mapping: the old file is
+     * renamed over, not truncated. The cached mapping is dropped first;
+     * Windows won't rename over a file this class still has mapped.
+     */
+    public void write(String key, List<Transaction> rows) throws IOException {
+        Files.createDirectories(dir);
+        Path path = pathOf(key);
+        cache.remove(key);
+        if (!rows.isEmpty() || Files.exists(path) || Files.exists(LedgerFile.backupOf(path))) {
+            LedgerFile.writeAtomically(path, rows);
+        }
+        cache.remove(key); // In case a reader mapped it again meanwhile
+    }
+
+    /**
+     * The id the next new transaction gets, as of the last compaction.
+     * 0 if there's no manifest.
+     */
+    public long readNextId() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) return 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.startsWith("nextId=")) {
+                try {
+                    return Long.parseLong(line.substring(7).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the manifest. Call after the segments of a compaction are down.
+     */
+    public void writeManifest(long nextId) throws IOException {
+        Files.createDirectories(dir);
+        Path manifest = dir.resolve(MANIFEST);
+        Path temp = dir.resolve(MANIFEST + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.wrap(("nextId=" + nextId + "\n").getBytes(StandardCharsets.UTF_8));
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(true);
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LedgerFile.syncDirectory(manifest);
+    }
+
+    /**
+     * Segments that were damaged and replaced by their backup.
+     */
+    public Set<String> getRestored() {
+        return restored;
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    private Path pathOf(String key) {
+        return dir.resolve(key + SUFFIX);
+    }
+}
@@ -0,0 +1,29 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+/**
+ * A sidebar view's controller, as seen by ViewManager. The view is loaded
+ * once and kept, so anything it listens to (currency, budget, indexes)
+ * belongs in activate() and comes off again in deactivate(); a hidden
+ * view shouldn't be refreshed for changes nobody sees.
+ */
+public interface ManagedView {
+
+    /**
+     * Called once, right after the view is loaded.
+     */
+    void setMainApplication(BudgetApplication app);
+
+    /**
+     * Called every time the view is shown. Attach listeners and catch up
+     * on whatever changed while it was hidden.
+     */
+    default void activate() {
+    }
+
+    /**
+     * Called when another view replaces this one. Detach listeners.
+     */
+    default void deactivate() {
+    }
+}
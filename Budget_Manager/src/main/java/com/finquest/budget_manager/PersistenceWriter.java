@@ -0,0 +1,269 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread that does all of DataStore's disk writes.
+ *
+ * Callers hand over journal records (and now and then a snapshot job) and
+ * return immediately. The writer waits LINGER_MS after the first change
+ * so a burst of saves turns into one journal append and one fsync
+ * (group commit).
+ */
+public class PersistenceWriter {
+
+    private static final long LINGER_MS = 100;
+    // Wait before retrying a failed journal append, doubled each time it fails again
+    private static final long RETRY_MIN_MS = 500;
+    private static final long RETRY_MAX_MS = 30_000;
+    // Appends flush() tries before it gives up and reports the failure
+    private static final int FLUSH_ATTEMPTS = 4;
+
+    public enum Durability { FLUSHED, PENDING }
+
+    @FunctionalInterface
+    public interface DurabilityListener {
+        void onDurabilityChanged(Durability state);
+    }
+
+    /**
+     * Writes everything the journal holds to the ledger files (DataStore
+     * rewrites the months that changed). Built on the FX thread from copies
+     * of the data, run on the writer thread.
+     */
+    @FunctionalInterface
+    public interface SnapshotJob {
+        void write() throws IOException;
+    }
+
+    /**
+     * A second copy of the ledger (e.g. the H2 repository) that receives
+     * every journal batch after it's committed. Both calls run on the
+     * writer thread and must be safe to repeat.
+     */
+    public interface Mirror {
+        void replaceAll(List<Transaction> rows) throws IOException;
+        void apply(List<TransactionJournal.Record> records) throws IOException;
+    }
+
+    // Queued by addMirror(): fill the mirror, then start feeding it
+    private static final class MirrorReset {
+        final Mirror mirror;
+        final List<Transaction> rows;
+        final Runnable onReady;
+
+        MirrorReset(Mirror mirror, List<Transaction> rows, Runnable onReady) {
+            this.mirror = mirror;
+            this.rows = rows;
+            this.onReady = onReady;
+        }
+    }
+
+    private final TransactionJournal journal;
+    private final List<Mirror> mirrors = new ArrayList<>(); // writer thread only
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "finquest-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Records and snapshot jobs, in the order they were submitted
+    private final List<Object> queue = new ArrayList<>();
+    private boolean drainScheduled = false;
+    private long retryDelayMs = 0; // writer thread only; 0 = last append worked
+    private IOException lastFailure; // writer thread only; null = nothing waiting for a retry
+
+    private volatile Durability durability = Durability.FLUSHED;
+    private final List<DurabilityListener> listeners = new CopyOnWriteArrayList<>();
+
+    public PersistenceWriter(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Queues journal records for the next group commit.
+     */
+    public void submit(List<TransactionJournal.Record> records) {
+        if (records.isEmpty()) return;
+        enqueue(new ArrayList<>(records));
+    }
+
+    /**
+     * Queues a snapshot job. Records queued before it are covered by the
+     * job, so they are dropped and the journal is emptied afterwards.
+     */
+    public void submitSnapshot(SnapshotJob job) {
+        enqueue(job);
+    }
+
+    /**
+     * Starts mirroring. The rows must be copies of the whole ledger as of
+     * now; they are loaded into the mirror in queue order, so records
+     * submitted afterwards are applied on top of them. Pass null rows if
+     * the mirror is already up to date. onReady runs on the writer thread
+     * once the mirror holds the whole ledger.
+     */
+    public void addMirror(Mirror mirror, List<Transaction> rows, Runnable onReady) {
+        enqueue(new MirrorReset(mirror, rows, onReady));
+    }
+
+    private void enqueue(Object item) {
+        synchronized (queue) {
+            if (item instanceof List) queue.addAll((List<?>) item);
+            else queue.add(item);
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.schedule(this::drain, LINGER_MS, TimeUnit.MILLISECONDS);
+            }
+            setDurability(Durability.PENDING);
+        }
+    }
+
+    /**
+     * Blocks until everything queued so far is on disk. Meant for exit.
+     * A failed journal append is retried a few times first.
+     *
+     * @throws IOException if the journal still can't be written; the
+     * records stay queued, so nothing is lost while the app keeps running
+     */
+    public void flush() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            IOException failure;
+            try {
+                failure = executor.submit(() -> {
+                    drain();
+                    return lastFailure;
+                }).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the journal");
+            } catch (ExecutionException e) {
+                throw new IOException("Journal writer failed", e.getCause());
+            }
+            if (failure == null) return;
+            if (attempt == FLUSH_ATTEMPTS) throw failure;
+            try {
+                Thread.sleep(RETRY_MIN_MS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the journal");
+            }
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void addListener(DurabilityListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DurabilityListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Runs on the writer thread only
+    private void drain() {
+        List<Object> batch;
+        synchronized (queue) {
+            batch = new ArrayList<>(queue);
+            queue.clear();
+            drainScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            lastFailure = null;
+            return;
+        }
+
+        List<TransactionJournal.Record> records = new ArrayList<>();
+        List<TransactionJournal.Record> toMirror = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Object item = batch.get(i);
+            if (item instanceof TransactionJournal.Record) {
+                records.add((TransactionJournal.Record) item);
+                toMirror.add((TransactionJournal.Record) item);
+                continue;
+            }
+            if (item instanceof MirrorReset) {
+                // Mirrors that were already running get what came before the reset
+                applyToMirrors(toMirror);
+                toMirror.clear();
+                MirrorReset reset = (MirrorReset) item;
+                try {
+                    if (reset.rows != null) reset.mirror.replaceAll(reset.rows);
+                    mirrors.add(reset.mirror);
+                    reset.onReady.run();
+                } catch (IOException e) {
+                    System.out.println("PersistenceWriter: could not start mirror. " + e.getMessage());
+                }
+                continue;
+            }
+            try {
+                ((SnapshotJob) item).write();
+                journal.truncate();
+                records.clear(); // Already part of the snapshot
+            } catch (IOException e) {
+                // Keep the records; they still go to the journal below
+                System.out.println("PersistenceWriter: snapshot failed, keeping journal. " + e.getMessage());
+            }
+        }
+
+        try {
+            journal.append(records);
+        } catch (IOException e) {
+            e.printStackTrace();
+            lastFailure = e;
+            // Put them back in front and try again later, in order; the
+            // durability stays PENDING until an append goes through
+            retryDelayMs = retryDelayMs == 0 ? RETRY_MIN_MS : Math.min(retryDelayMs * 2, RETRY_MAX_MS);
+            synchronized (queue) {
+                queue.addAll(0, records);
+                if (!drainScheduled) {
+                    drainScheduled = true;
+                    executor.schedule(this::drain, retryDelayMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            System.out.println("PersistenceWriter: journal append failed, retrying in " + retryDelayMs + " ms");
+            return;
+        }
+        retryDelayMs = 0;
+        lastFailure = null;
+        applyToMirrors(toMirror);
+
+        synchronized (queue) {
+            // More may have arrived meanwhile; then we're still pending
+            if (queue.isEmpty()) setDurability(Durability.FLUSHED);
+        }
+    }
+
+    private void applyToMirrors(List<TransactionJournal.Record> records) {
+        if (records.isEmpty()) return;
+        for (Mirror mirror : mirrors) {
+            try {
+                mirror.apply(records);
+            } catch (IOException e) {
+                // The journal has the change; the mirror gets rebuilt on next start
+                System.out.println("PersistenceWriter: mirror update failed. " + e.getMessage());
+            }
+        }
+    }
+
+    // Called with the queue lock held so state changes stay in order
+    private void setDurability(Durability state) {
+        if (durability == state) return;
+        durability = state;
+        for (DurabilityListener listener : listeners) {
+            listener.onDurabilityChanged(state);
+        }
+    }
+}
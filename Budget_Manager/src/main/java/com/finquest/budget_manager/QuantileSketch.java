@@ -0,0 +1,105 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate quantiles (median, p90) of a stream of amounts in bounded
+ * memory, in the style of a KLL sketch.
+ *
+ * Values go into level 0. When a level holds K values it's sorted and
+ * every other value (starting at a random one of the first two) moves up
+ * a level, where each value stands for twice as many; the rest are
+ * dropped. So at most K values are kept per level, about K * log2(n / K)
+ * in all, and a quantile is off by roughly a couple of percent of rank.
+ * Sketches of different months merge by pooling their levels.
+ *
+ * Not thread-safe; copy() one to hand it to another thread.
+ */
+public class QuantileSketch {
+
+    private static final int K = 128;
+
+    private double[][] levels = {new double[K]};
+    private int[] sizes = {0};
+    private long count = 0;
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+    }
+
+    /**
+     * Adds everything another sketch has seen; the other one isn't changed.
+     */
+    public void merge(QuantileSketch other) {
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) append(h, other.levels[h][i]);
+        }
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * The value at rank q (0 = smallest, 1 = largest), or 0 if empty.
+     */
+    public double quantile(double q) {
+        int n = 0;
+        for (int size : sizes) n += size;
+        if (n == 0) return 0;
+        // Every kept value with the weight of its level, walked in value order
+        double[] values = new double[n];
+        long[] weights = new long[n];
+        Integer[] order = new Integer[n];
+        int j = 0;
+        long total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++, j++) {
+                values[j] = levels[h][i];
+                weights[j] = 1L << h;
+                order[j] = j;
+                total += weights[j];
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double target = q * total;
+        long seen = 0;
+        for (int i : order) {
+            seen += weights[i];
+            if (seen >= target) return values[i];
+        }
+        return values[order[n - 1]];
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch c = new QuantileSketch();
+        c.levels = new double[levels.length][];
+        for (int h = 0; h < levels.length; h++) c.levels[h] = levels[h].clone();
+        c.sizes = sizes.clone();
+        c.count = count;
+        return c;
+    }
+
+    private void append(int h, double value) {
+        if (h >= levels.length) { // A merged sketch may be taller
+            int old = levels.length;
+            levels = Arrays.copyOf(levels, h + 1);
+            for (int i = old; i <= h; i++) levels[i] = new double[K];
+            sizes = Arrays.copyOf(sizes, h + 1);
+        }
+        levels[h][sizes[h]++] = value;
+        if (sizes[h] == K) compact(h);
+    }
+
+    // Halves a full level (K is even) into the one above it
+    private void compact(int h) {
+        double[] level = levels[h];
+        Arrays.sort(level, 0, K);
+        sizes[h] = 0;
+        for (int i = ThreadLocalRandom.current().nextInt(2); i < K; i += 2) append(h + 1, level[i]);
+    }
+}
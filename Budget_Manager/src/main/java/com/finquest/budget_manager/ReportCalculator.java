@@ -0,0 +1,86 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.concurrent.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the Reports view's numbers into a Summary and Insights on a
+ * background thread.
+ *
+ * What runs where: the totals come from the month x category cube, and
+ * LedgerAggregates.rollup() adds up the months in the period on the FX
+ * thread. That costs one pass over months x categories, whatever the
+ * number of transactions, and is no more than copying the cells out would
+ * be, so it isn't split up any further. The LedgerAnalytics snapshot is
+ * also taken on the FX thread (a copy of each month's bounded summaries,
+ * after rebuilding the months that edits or deletes marked stale).
+ * This task gets both, neither of which changes under it, and does the
+ * rest: it filters the rollup by type into the Summary's maps and merges
+ * the months' sketches, counters and heaps into the Insights. A task the
+ * view has given up on stops before the merge.
+ *
+ * The task's value is the finished Summary, ready for the charts and the
+ * export; the insights can be read with getInsights() once it has
+ * succeeded.
+ */
+public class ReportCalculator extends Task<ReportExporter.Summary> {
+
+    private final LedgerAggregates.Rollup rollup;
+    private final String period;
+    private final String type;
+    private final boolean showIncome;
+    private final boolean showExpense;
+    private final LedgerAnalytics.Snapshot analytics;
+    private volatile LedgerAnalytics.Insights insights;
+
+    /**
+     * @param rollup    LedgerAggregates.rollup() for the period; not shared
+     * @param analytics the LedgerAnalytics snapshot for the same period
+     * @param period    the period filter, for the summary
+     * @param type      the type filter ("All Transactions", "Income" or "Expense")
+     */
+    public ReportCalculator(LedgerAggregates.Rollup rollup, LedgerAnalytics.Snapshot analytics,
+                            String period, String type) {
+        this.rollup = rollup;
+        this.analytics = analytics;
+        this.period = period;
+        this.type = type;
+        this.showIncome = !"Expense".equals(type);
+        this.showExpense = !"Income".equals(type);
+    }
+
+    @Override
+    protected ReportExporter.Summary call() {
+        if (isCancelled()) return null;
+
+        double totalIncome = showIncome ? rollup.getTotal().getIncome() : 0.0;
+        double totalExpenses = showExpense ? rollup.getTotal().getExpenses() : 0.0;
+        Map<String, Double> incomeCategoryData = new HashMap<>();
+        Map<String, Double> expenseCategoryData = new HashMap<>();
+        for (Map.Entry<String, LedgerAggregates.Cell> e : rollup.getCategories().entrySet()) {
+            if (showIncome && e.getValue().getIncome() != 0) incomeCategoryData.put(e.getKey(), e.getValue().getIncome());
+            if (showExpense && e.getValue().getExpenses() != 0) expenseCategoryData.put(e.getKey(), e.getValue().getExpenses());
+        }
+
+        Map<String, double[]> monthlyData = new TreeMap<>(); // Sorted by month; [0]=Income, [1]=Expense
+        rollup.getMonths().forEach((month, cell) -> {
+            double income = showIncome ? cell.getIncome() : 0.0;
+            double expense = showExpense ? cell.getExpenses() : 0.0;
+            if (income != 0 || expense != 0) monthlyData.put(month.toString(), new double[]{income, expense});
+        });
+
+        insights = analytics.summarize(showIncome, showExpense);
+        if (isCancelled()) return null;
+
+        return new ReportExporter.Summary(period, type, totalIncome, totalExpenses,
+                incomeCategoryData, expenseCategoryData, monthlyData);
+    }
+
+    public LedgerAnalytics.Insights getInsights() {
+        return insights;
+    }
+}
@@ -0,0 +1,302 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the current report to a CSV, JSON or HTML file on a background
+ * thread.
+ *
+ * Rows are streamed straight to a buffered writer as they're formatted, so
+ * the document itself is never held in memory. The file is written next to
+ * the target as ".part" and only renamed into place once it's complete,
+ * so a cancelled or failed export never leaves half a report behind.
+ *
+ * The task's value is the number of rows written.
+ */
+public class ReportExporter extends Task<Long> {
+
+    public enum Format { CSV, JSON, HTML }
+
+    /**
+     * The report's headline numbers and chart data, captured on the FX
+     * thread when the export starts.
+     */
+    public static final class Summary {
+        final String period;
+        final String type;
+        final double totalIncome;
+        final double totalExpenses;
+        final Map<String, Double> incomeByCategory;
+        final Map<String, Double> expensesByCategory;
+        final Map<String, double[]> monthly; // month -> {income, expense}
+
+        public Summary(String period, String type, double totalIncome, double totalExpenses,
+                       Map<String, Double> incomeByCategory, Map<String, Double> expensesByCategory,
+                       Map<String, double[]> monthly) {
+            this.period = period;
+            this.type = type;
+            this.totalIncome = totalIncome;
+            this.totalExpenses = totalExpenses;
+            this.incomeByCategory = incomeByCategory;
+            this.expensesByCategory = expensesByCategory;
+            this.monthly = monthly;
+        }
+    }
+
+    private static final int PROGRESS_EVERY = 1000;
+
+    private final Path target;
+    private final Format format;
+    private final List<Transaction> rows;
+    private final Summary summary;
+
+    /**
+     * @param rows the report rows, each a Transaction.copy() made on the FX
+     *             thread. The live rows can be edited (or their slot in
+     *             the column store reused) while the export runs.
+     */
+    public ReportExporter(Path target, Format format, List<Transaction> rows, Summary summary) {
+        this.target = target;
+        this.format = format;
+        this.rows = rows;
+        this.summary = summary;
+    }
+
+    /**
+     * Picks the format from the file extension (CSV if it's unknown).
+     */
+    public static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".json")) return Format.JSON;
+        if (name.endsWith(".html") || name.endsWith(".htm")) return Format.HTML;
+        return Format.CSV;
+    }
+
+    @Override
+    protected Long call() throws Exception {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long written;
+        try (Writer out = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+            switch (format) {
+                case JSON: written = writeJson(out); break;
+                case HTML: written = writeHtml(out); break;
+                default: written = writeCsv(out); break;
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        if (isCancelled()) {
+            Files.deleteIfExists(part);
+            return written;
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        updateProgress(1, 1);
+        System.out.println("ReportExporter: wrote " + written + " rows to " + target);
+        return written;
+    }
+
+    // --- CSV ---
+
+    private long writeCsv(Writer out) throws IOException {
+        out.write("Date,Title,Category,Type,Amount\r\n");
+        long i = 0;
+        for (Transaction tx : rows) {
+            if (!step(i++)) break;
+            out.write(csv(date(tx.getDate())));
+            out.write(',');
+            out.write(csv(tx.getTitle()));
+            out.write(',');
+            out.write(csv(tx.getCategory()));
+            out.write(',');
+            out.write(csv(tx.getType()));
+            out.write(',');
+            out.write(amount(tx.getAmount()));
+            out.write("\r\n");
+        }
+        return i;
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // --- JSON: summary first, then the rows as an array ---
+
+    private long writeJson(Writer out) throws IOException {
+        out.write("{\n  \"period\": " + json(summary.period));
+        out.write(",\n  \"type\": " + json(summary.type));
+        out.write(",\n  \"totalIncome\": " + amount(summary.totalIncome));
+        out.write(",\n  \"totalExpenses\": " + amount(summary.totalExpenses));
+        out.write(",\n  \"netSavings\": " + amount(summary.totalIncome - summary.totalExpenses));
+        out.write(",\n  \"incomeByCategory\": ");
+        writeJsonMap(out, summary.incomeByCategory);
+        out.write(",\n  \"expensesByCategory\": ");
+        writeJsonMap(out, summary.expensesByCategory);
+        out.write(",\n  \"monthly\": [");
+        boolean first = true;
+        for (Map.Entry<String, double[]> e : summary.monthly.entrySet()) {
+            out.write(first ? "\n    " : ",\n    ");
+            out.write("{\"month\": " + json(e.getKey()) + ", \"income\": " + amount(e.getValue()[0])
+                    + ", \"expenses\": " + amount(e.getValue()[1]) + "}");
+            first = false;
+        }
+        out.write("\n  ],\n  \"transactions\": [");
+
+        long i = 0;
+        for (Transaction tx : rows) {
+            if (!step(i)) break;
+            out.write(i == 0 ? "\n    " : ",\n    ");
+            out.write("{\"date\": " + json(date(tx.getDate()))
+                    + ", \"title\": " + json(tx.getTitle())
+                    + ", \"category\": " + json(tx.getCategory())
+                    + ", \"type\": " + json(tx.getType())
+                    + ", \"amount\": " + amount(tx.getAmount()) + "}");
+            i++;
+        }
+        out.write("\n  ]\n}\n");
+        return i;
+    }
+
+    private static void writeJsonMap(Writer out, Map<String, Double> map) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Double> e : map.entrySet()) {
+            if (!first) out.write(", ");
+            out.write(json(e.getKey()) + ": " + amount(e.getValue()));
+            first = false;
+        }
+        out.write('}');
+    }
+
+    private static String json(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // --- HTML: one self-contained page, charts drawn as inline SVG ---
+
+    private long writeHtml(Writer out) throws IOException {
+        out.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>FINQUEST Report</title>\n<style>\n"
+                + "body{font-family:Segoe UI,Arial,sans-serif;margin:24px;color:#2c3e50}\n"
+                + ".cards{display:flex;gap:16px}.card{border:1px solid #ddd;border-radius:8px;padding:12px 20px}\n"
+                + ".in{color:#27ae60}.out{color:#e74c3c}\n"
+                + "table{border-collapse:collapse;margin:12px 0}td,th{padding:4px 10px;border-bottom:1px solid #eee;text-align:left}\n"
+                + "td.num{text-align:right}\n</style></head><body>\n");
+        out.write("<h1>FINQUEST Report</h1>\n<p>" + html(summary.period) + " &middot; " + html(summary.type) + "</p>\n");
+
+        double net = summary.totalIncome - summary.totalExpenses;
+        out.write("<div class=\"cards\">"
+                + "<div class=\"card\">Total Income<h2 class=\"in\">" + money(summary.totalIncome) + "</h2></div>"
+                + "<div class=\"card\">Total Expenses<h2 class=\"out\">" + money(summary.totalExpenses) + "</h2></div>"
+                + "<div class=\"card\">Net Savings<h2 class=\"" + (net >= 0 ? "in" : "out") + "\">" + money(net) + "</h2></div>"
+                + "</div>\n");
+
+        writeMonthlyChart(out);
+        writeCategoryTable(out, "Expenses by Category", summary.expensesByCategory);
+        writeCategoryTable(out, "Income by Category", summary.incomeByCategory);
+
+        out.write("<h2>Transactions</h2>\n<table><tr><th>Date</th><th>Title</th><th>Category</th><th>Type</th><th>Amount</th></tr>\n");
+        long i = 0;
+        for (Transaction tx : rows) {
+            if (!step(i++)) break;
+            out.write("<tr><td>" + html(date(tx.getDate())) + "</td><td>" + html(tx.getTitle()) + "</td><td>"
+                    + html(tx.getCategory()) + "</td><td>" + html(tx.getType()) + "</td><td class=\"num "
+                    + (tx.isIncome() ? "in\">+" : "out\">-") + money(tx.getAmount()) + "</td></tr>\n");
+        }
+        out.write("</table>\n</body></html>\n");
+        return i;
+    }
+
+    // Grouped bar chart of income vs expenses per month
+    private void writeMonthlyChart(Writer out) throws IOException {
+        if (summary.monthly.isEmpty()) return;
+        double max = 1;
+        for (double[] v : summary.monthly.values()) max = Math.max(max, Math.max(v[0], v[1]));
+        int barWidth = 14, gap = 12, height = 200;
+        int width = summary.monthly.size() * (2 * barWidth + gap) + gap;
+
+        out.write("<h2>Monthly Income vs Expenses</h2>\n<svg width=\"" + width + "\" height=\"" + (height + 40)
+                + "\" xmlns=\"http://www.w3.org/2000/svg\" font-size=\"10\">\n");
+        int x = gap;
+        for (Map.Entry<String, double[]> e : summary.monthly.entrySet()) {
+            int hIn = (int) Math.round(e.getValue()[0] / max * height);
+            int hOut = (int) Math.round(e.getValue()[1] / max * height);
+            out.write("<rect x=\"" + x + "\" y=\"" + (height - hIn) + "\" width=\"" + barWidth + "\" height=\"" + hIn
+                    + "\" fill=\"#2ecc71\"><title>Income " + money(e.getValue()[0]) + "</title></rect>");
+            out.write("<rect x=\"" + (x + barWidth) + "\" y=\"" + (height - hOut) + "\" width=\"" + barWidth + "\" height=\"" + hOut
+                    + "\" fill=\"#e74c3c\"><title>Expenses " + money(e.getValue()[1]) + "</title></rect>");
+            out.write("<text x=\"" + x + "\" y=\"" + (height + 15) + "\">" + html(e.getKey()) + "</text>\n");
+            x += 2 * barWidth + gap;
+        }
+        out.write("</svg>\n");
+    }
+
+    private static void writeCategoryTable(Writer out, String title, Map<String, Double> data) throws IOException {
+        if (data.isEmpty()) return;
+        out.write("<h2>" + html(title) + "</h2>\n<table>");
+        for (Map.Entry<String, Double> e : data.entrySet()) {
+            out.write("<tr><td>" + html(e.getKey()) + "</td><td class=\"num\">" + money(e.getValue()) + "</td></tr>");
+        }
+        out.write("</table>\n");
+    }
+
+    private static String html(String value) {
+        if (value == null) return "";
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String money(double value) {
+        return html(CurrencyUtil.formatCurrency(value));
+    }
+
+    // --- Shared ---
+
+    // Reports progress now and then; false once the task is cancelled
+    private boolean step(long i) {
+        if (i % PROGRESS_EVERY == 0) {
+            if (isCancelled()) return false;
+            updateProgress(i, rows.size());
+        }
+        return true;
+    }
+
+    private static String date(LocalDate date) {
+        return date != null ? date.toString() : null;
+    }
+
+    // Plain machine-readable number (no currency symbol or grouping)
+    private static String amount(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -3,7 +3,6 @@ package com.finquest.budget_manager;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Pos;
@@ -11,7 +10,9 @@ import javafx.scene.chart.BarChart;
 import javafx.scene.chart.PieChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TableColumn;
@@ -23,17 +24,22 @@ import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.control.TableRow;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent; // <-- NEW IMPORT
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.TreeMap;
-import java.util.function.Predicate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class ReportsController implements Initializable {
+public class ReportsController implements Initializable, ManagedView {
 
     // --- Key Metric Cards ---
     @FXML private Label totalIncomeLabel;
@@ -42,12 +48,24 @@ public class ReportsController implements Initializable {
 
     // --- Filters ---
     @FXML private ComboBox<String> transactionTypeFilter;
+    @FXML private ComboBox<String> periodFilter;
 
     // --- Charts ---
     @FXML private PieChart expenseBreakdownChart;
     @FXML private PieChart incomeBreakdownChart;
     @FXML private BarChart<String, Number> monthlyBarChart;
 
+    // --- Insights ---
+    @FXML private ListView<String> largestExpensesList;
+    @FXML private TableView<LedgerAnalytics.CategorySize> categorySizeTable;
+    @FXML private TableColumn<LedgerAnalytics.CategorySize, String> sizeCategoryCol;
+    @FXML private TableColumn<LedgerAnalytics.CategorySize, Double> sizeMedianCol;
+    @FXML private TableColumn<LedgerAnalytics.CategorySize, Double> sizeP90Col;
+    @FXML private TableColumn<LedgerAnalytics.CategorySize, Long> sizeCountCol;
+    @FXML private BarChart<String, Number> merchantsChart;
+
+    @FXML private Button exportButton;
+
     // --- Table ---
     @FXML private TableView<Transaction> transactionReportTable;
     @FXML private TableColumn<Transaction, String> titleCol;
@@ -60,45 +78,80 @@ public class ReportsController implements Initializable {
     // Chart data series
     private XYChart.Series<String, Number> incomeSeries;
     private XYChart.Series<String, Number> expenseSeries;
+    private XYChart.Series<String, Number> merchantsSeries;
+    private TimeBarChart timeline; // Zoomable income/expense bars on monthlyBarChart
 
-    // Full data list from DataStore
-    private final ObservableList<Transaction> allTransactions = DataStore.getInstance().getTransactions();
-    // Filtered list that backs all UI elements
-    private FilteredList<Transaction> filteredData;
+    // The rows the filters let through, kept current by DataStore's FilterIndex
+    // (null while the view is hidden)
+    private FilterIndex.Selection filteredData;
 
     private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
 
+    // What the charts currently show, kept for the export
+    private ReportExporter.Summary currentSummary;
+    // The report being worked out in the background, if any
+    private ReportCalculator reportTask;
+    private int filterCount = 0; // Bumped by applyFilter(), so a page-in that ends late is ignored
+
+    // One thread for report calculations; each runs start to finish on it
+    private static final ExecutorService REPORT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "finquest-reports");
+        t.setDaemon(true);
+        return t;
+    });
+    private ReportExporter exporter;
+
     /**
      * Public setter to inject the main application instance
      */
+    @Override
     public void setMainApplication(BudgetApplication app) {
         this.mainApp = app;
     }
 
+    /**
+     * Attaches the table to a fresh FilterIndex selection and works the
+     * report out again, since the ledger may have changed while the view
+     * was hidden.
+     */
+    @Override
+    public void activate() {
+        filteredData = DataStore.getInstance().getFilterIndex().newSelection();
+        transactionReportTable.setItems(filteredData.getRows());
+        applyFilter();
+    }
+
+    @Override
+    public void deactivate() {
+        if (reportTask != null) reportTask.cancel();
+        reportTask = null;
+        if (filteredData != null) filteredData.dispose();
+        filteredData = null;
+        transactionReportTable.setItems(FXCollections.observableArrayList());
+    }
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         // 1. Initialize Filter ComboBox
         transactionTypeFilter.setItems(FXCollections.observableArrayList("All Transactions", "Income", "Expense"));
         transactionTypeFilter.setValue("All Transactions");
+        periodFilter.setItems(FXCollections.observableArrayList("This Month", "Last 3 Months", "Last 12 Months", "All Time"));
+        periodFilter.setValue("Last 12 Months");
 
-        // 2. Wrap the master data list in a FilteredList
-        filteredData = new FilteredList<>(allTransactions, p -> true);
-
-        // 3. Set up listener on the filter ComboBox
+        // 2. Set up listeners on the filter ComboBoxes
         transactionTypeFilter.valueProperty().addListener((obs, oldVal, newVal) -> applyFilter());
+        periodFilter.valueProperty().addListener((obs, oldVal, newVal) -> applyFilter());
 
-        // 4. Set up the main TableView
+        // 3. Set up the main TableView (its rows are attached in activate())
         setupTable();
 
         // --- NEW: Add context menu and row factory ---
         setupContextMenu();
         setupRowFactory();
 
-        // 5. Set up the charts
+        // 4. Set up the charts and the insight cards
         setupCharts();
-
-        // 6. Run the initial data load to populate everything
-        loadReportData();
+        setupInsights();
     }
 
     /**
@@ -158,10 +211,10 @@ public class ReportsController implements Initializable {
      * Sets up the columns for the main data table
      */
     private void setupTable() {
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
-        amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
+        titleCol.setCellValueFactory(cd -> cd.getValue().titleProperty());
+        categoryCol.setCellValueFactory(cd -> cd.getValue().categoryProperty());
+        dateCol.setCellValueFactory(cd -> cd.getValue().dateProperty());
+        amountCol.setCellValueFactory(cd -> cd.getValue().amountProperty());
 
         // --- FIX: Apply alignment to all cells ---
 
@@ -210,23 +263,15 @@ public class ReportsController implements Initializable {
                     setText(CurrencyUtil.formatCurrency(item));
                     if (getTableRow() != null && getTableRow().getItem() != null) {
                         Transaction tx = getTableRow().getItem();
-                        if ("Income".equalsIgnoreCase(tx.getType())) {
-                            setText("+" + CurrencyUtil.formatCurrency(item));
-                            getStyleClass().add("transaction-amount-in");
-                            getStyleClass().removeAll("transaction-amount-out");
-                        } else {
-                            setText("-" + CurrencyUtil.formatCurrency(item));
-                            getStyleClass().add("transaction-amount-out");
-                            getStyleClass().removeAll("transaction-amount-in");
-                        }
+                        TransactionKind kind = tx.getKind();
+                        setText(kind.getSign() + CurrencyUtil.formatCurrency(item));
+                        getStyleClass().removeAll("transaction-amount-in", "transaction-amount-out");
+                        getStyleClass().add(kind.getStyleClass());
                     }
                     setAlignment(Pos.CENTER_RIGHT);
                 }
             }
         });
-
-        // Bind the filtered data list to the table
-        transactionReportTable.setItems(filteredData);
     }
 
     /**
@@ -240,88 +285,149 @@ public class ReportsController implements Initializable {
         expenseSeries.setName("Expenses");
 
         monthlyBarChart.getData().addAll(incomeSeries, expenseSeries);
+        timeline = new TimeBarChart(monthlyBarChart, incomeSeries, expenseSeries);
+    }
+
+    /**
+     * Sets up the largest expenses, size per category and merchant cards.
+     */
+    private void setupInsights() {
+        merchantsSeries = new XYChart.Series<>();
+        merchantsSeries.setName("Merchants");
+        if (merchantsChart != null) merchantsChart.getData().add(merchantsSeries);
+
+        if (categorySizeTable == null) return;
+        sizeCategoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        sizeMedianCol.setCellValueFactory(new PropertyValueFactory<>("median"));
+        sizeP90Col.setCellValueFactory(new PropertyValueFactory<>("p90"));
+        sizeCountCol.setCellValueFactory(new PropertyValueFactory<>("count"));
+        for (TableColumn<LedgerAnalytics.CategorySize, Double> col : List.of(sizeMedianCol, sizeP90Col)) {
+            col.setCellFactory(column -> new TableCell<LedgerAnalytics.CategorySize, Double>() {
+                @Override
+                protected void updateItem(Double item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty || item == null ? null : CurrencyUtil.formatCurrency(item));
+                    setAlignment(Pos.CENTER_RIGHT);
+                }
+            });
+        }
     }
 
     /**
      * Called when the filter ComboBox changes value
      */
     private void applyFilter() {
+        if (filteredData == null) return; // Hidden; activate() filters again
         String filterType = transactionTypeFilter.getValue();
+        LocalDate from = getPeriodStart();
+        int filter = ++filterCount;
 
-        if (filterType == null || "All Transactions".equals(filterType)) {
-            filteredData.setPredicate(p -> true); // Show all
-        } else {
-            // Show only "Income" or "Expense"
-            filteredData.setPredicate(tx -> filterType.equalsIgnoreCase(tx.getType()));
-        }
+        // Older months may still be on disk; they're decoded in the
+        // background and the filter is applied once they're in the list
+        DataStore.getInstance().loadHistorySinceInBackground(from, () -> {
+            if (filter != filterCount || filteredData == null) return; // Changed again, or hidden
+
+            // Both filters are answered from the FilterIndex bitmaps
+            TransactionKind kind = (filterType == null || "All Transactions".equals(filterType))
+                    ? null : TransactionKind.of(filterType); // null shows all
+            filteredData.setCriteria(FilterIndex.Criteria.all().kind(kind).between(from, null));
+
+            // After filtering, reload all dashboard metrics and charts
+            loadReportData();
+        });
+    }
 
-        // After filtering, reload all dashboard metrics and charts
-        loadReportData();
+    /**
+     * First day covered by the period filter, or null for all time.
+     */
+    private LocalDate getPeriodStart() {
+        LocalDate firstOfMonth = LocalDate.now().withDayOfMonth(1);
+        String period = periodFilter.getValue();
+        if ("This Month".equals(period)) return firstOfMonth;
+        if ("Last 3 Months".equals(period)) return firstOfMonth.minusMonths(2);
+        if ("Last 12 Months".equals(period)) return firstOfMonth.minusMonths(11);
+        return null;
     }
 
     /**
-     * Main method to process data and populate all UI elements
+     * Main method to process data and populate all UI elements.
+     * The cube rollup and the analytics snapshot are taken here (both go by
+     * months and categories, not rows), since the aggregates and analytics
+     * are FX thread only. The snapshot first rebuilds any month that edits
+     * or deletes marked since the last report, which does read that month's
+     * rows. A ReportCalculator turns them into the summary and insights in
+     * the background and the result is shown in one go when it's done. A
+     * newer filter change cancels the one still running, and a result that
+     * comes in late is dropped.
      */
     private void loadReportData() {
-        Map<String, Double> expenseCategoryData = new HashMap<>();
-        Map<String, Double> incomeCategoryData = new HashMap<>();
-        Map<String, double[]> monthlyData = new TreeMap<>(); // Use TreeMap to sort months
-        DateTimeFormatter monthFormatter = DateTimeFormatter.ofPattern("yyyy-MM");
-
-        double totalIncome = 0.0;
-        double totalExpenses = 0.0;
-
-        // Clear charts before repopulating
-        incomeSeries.getData().clear();
-        expenseSeries.getData().clear();
-
-        // Iterate through the *filtered* list
-        for (Transaction tx : filteredData) {
-            String monthKey = tx.getDate().format(monthFormatter);
-            double[] monthValues = monthlyData.getOrDefault(monthKey, new double[2]); // [0]=Income, [1]=Expense
-
-            if ("Income".equalsIgnoreCase(tx.getType())) {
-                totalIncome += tx.getAmount();
-                monthValues[0] += tx.getAmount();
-                incomeCategoryData.put(tx.getCategory(), incomeCategoryData.getOrDefault(tx.getCategory(), 0.0) + tx.getAmount());
-
-            } else if ("Expense".equalsIgnoreCase(tx.getType())) {
-                totalExpenses += tx.getAmount();
-                monthValues[1] += tx.getAmount();
-                expenseCategoryData.put(tx.getCategory(), expenseCategoryData.getOrDefault(tx.getCategory(), 0.0) + tx.getAmount());
-            }
-            monthlyData.put(monthKey, monthValues);
-        }
+        if (reportTask != null) reportTask.cancel();
+
+        LocalDate from = getPeriodStart();
+        YearMonth fromMonth = from != null ? YearMonth.from(from) : null;
+        LedgerAggregates.Rollup rollup = DataStore.getInstance().getAggregates().rollup(fromMonth);
+        LedgerAnalytics.Snapshot analytics = DataStore.getInstance().getAnalytics().snapshot(fromMonth);
+        ReportCalculator task = new ReportCalculator(rollup, analytics, periodFilter.getValue(), transactionTypeFilter.getValue());
+        reportTask = task;
+
+        task.setOnSucceeded(e -> {
+            if (reportTask != task) return; // Superseded before it got here
+            reportTask = null;
+            showReport(task.getValue());
+            showInsights(task.getInsights());
+        });
+        task.setOnFailed(e -> {
+            if (reportTask == task) reportTask = null;
+            System.err.println("ReportsController: could not compute the report: " + task.getException());
+        });
+        REPORT_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Puts a computed report on the metric cards and the charts.
+     */
+    private void showReport(ReportExporter.Summary summary) {
+        currentSummary = summary;
 
         // Update the top metric cards
-        populateKeyMetrics(totalIncome, totalExpenses);
+        populateKeyMetrics(summary.totalIncome, summary.totalExpenses);
 
         // Populate the Pie Charts
-        populatePieChart(expenseBreakdownChart, expenseCategoryData);
-        populatePieChart(incomeBreakdownChart, incomeCategoryData);
+        populatePieChart(expenseBreakdownChart, summary.expensesByCategory);
+        populatePieChart(incomeBreakdownChart, summary.incomeByCategory);
 
-        // Populate the Bar Chart
-        for (Map.Entry<String, double[]> entry : monthlyData.entrySet()) {
-            String month = entry.getKey();
-            double income = entry.getValue()[0];
-            double expense = entry.getValue()[1];
+        // Populate the Bar Chart; it picks its own resolution for the
+        // visible part of the period (summary.monthly is for the export)
+        timeline.show(getPeriodStart(), !"Expense".equals(summary.type), !"Income".equals(summary.type));
+    }
 
-            incomeSeries.getData().add(new XYChart.Data<>(month, income));
-            expenseSeries.getData().add(new XYChart.Data<>(month, expense));
+    /**
+     * Puts the computed insights on their cards.
+     */
+    private void showInsights(LedgerAnalytics.Insights insights) {
+        if (largestExpensesList != null) {
+            ObservableList<String> lines = FXCollections.observableArrayList();
+            for (LedgerAnalytics.Expense e : insights.getLargestExpenses()) {
+                String date = e.getDate() != null ? DATE_FORMATTER.format(e.getDate()) : "No date";
+                lines.add(CurrencyUtil.formatCurrency(e.getAmount()) + "  " + e.getTitle() + " (" + e.getCategory() + ", " + date + ")");
+            }
+            largestExpensesList.setItems(lines);
+        }
+        if (categorySizeTable != null) {
+            categorySizeTable.setItems(FXCollections.observableArrayList(insights.getCategorySizes()));
         }
+        Map<String, Long> merchants = new LinkedHashMap<>();
+        insights.getMerchantsByMonth().forEach((month, count) -> merchants.put(month.toString(), count));
+        ChartUtil.setSeries(merchantsSeries, merchants);
     }
 
     /**
-     * Generic helper method to populate a PieChart
+     * Generic helper method to populate a PieChart; slices for categories
+     * it already shows are kept and resized
      */
     private void populatePieChart(PieChart chart, Map<String, Double> data) {
         if (chart == null) return;
-
-        ObservableList<PieChart.Data> pieData = FXCollections.observableArrayList();
-        for (Map.Entry<String, Double> entry : data.entrySet()) {
-            pieData.add(new PieChart.Data(entry.getKey(), entry.getValue()));
-        }
-        chart.setData(pieData);
+        ChartUtil.setPie(chart, data);
     }
 
     /**
@@ -349,14 +455,64 @@ public class ReportsController implements Initializable {
     }
 
     /**
-     * Placeholder action for the export button
+     * Exports the filtered report as CSV, JSON or HTML (picked by the file
+     * type) on a background thread. Clicking again while it runs cancels it.
      */
     @FXML
     private void handleExportReport() {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        if (exporter != null) {
+            exporter.cancel();
+            return;
+        }
+        if (reportTask != null || currentSummary == null) {
+            // The summary would be for the previous filters
+            showExportResult(Alert.AlertType.INFORMATION, "The report is still being calculated. Try again in a moment.");
+            return;
+        }
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Report");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV spreadsheet", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON data", "*.json"),
+                new FileChooser.ExtensionFilter("HTML summary", "*.html"));
+        chooser.setInitialFileName("finquest-report-" + LocalDate.now() + ".csv");
+        File file = chooser.showSaveDialog(transactionReportTable.getScene().getWindow());
+        if (file == null) return;
+
+        // Detached copies, as PersistenceWriter takes; the live rows stay on the FX thread
+        List<Transaction> copies = new ArrayList<>(filteredData.getRows().size());
+        for (Transaction tx : filteredData.getRows()) copies.add(tx.copy());
+        exporter = new ReportExporter(file.toPath(), ReportExporter.formatOf(file.toPath()), copies, currentSummary);
+        exportButton.setText("Cancel Export");
+
+        exporter.setOnSucceeded(e -> {
+            long rows = exporter.getValue();
+            finishExport();
+            showExportResult(Alert.AlertType.INFORMATION, "Exported " + rows + " transactions to " + file.getName() + ".");
+        });
+        exporter.setOnCancelled(e -> finishExport());
+        exporter.setOnFailed(e -> {
+            Throwable error = exporter.getException();
+            finishExport();
+            showExportResult(Alert.AlertType.ERROR, "Could not export the report: " + error.getMessage());
+        });
+
+        Thread thread = new Thread(exporter, "finquest-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishExport() {
+        exportButton.setText("Export Report");
+        exporter = null;
+    }
+
+    private void showExportResult(Alert.AlertType type, String message) {
+        Alert alert = new Alert(type);
         alert.setTitle("Export Report");
-        alert.setHeaderText("Feature Coming Soon!");
-        alert.setContentText("This button will one day export your financial report.");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
         alert.showAndWait();
     }
 
@@ -0,0 +1,274 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of row slots for FilterIndex, laid out like a Roaring
+ * bitmap: slots are split by their high 16 bits into chunks of 65536, and
+ * each chunk is stored as a sorted char array while it holds up to 4096
+ * slots, or as 1024 longs of bits once it holds more. A month or a rare
+ * category costs a few bytes per row it has instead of a bit per row in
+ * the whole ledger, and and()/or() work a chunk at a time.
+ */
+public final class RowBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+
+    // One chunk: exactly one of array and bits is in use
+    private static final class Chunk {
+        char[] array;
+        long[] bits;
+        int card;
+
+        static Chunk ofArray(char[] array, int card) {
+            Chunk c = new Chunk();
+            c.array = array;
+            c.card = card;
+            return c;
+        }
+
+        static Chunk ofBits(long[] bits, int card) {
+            Chunk c = new Chunk();
+            c.bits = bits;
+            c.card = card;
+            return c.card <= ARRAY_MAX ? c.toArray() : c;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(array, 0, card, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] |= 1L << low;
+                if (before == bits[low >>> 6]) return false;
+                card++;
+                return true;
+            }
+            int i = Arrays.binarySearch(array, 0, card, low);
+            if (i >= 0) return false;
+            i = -i - 1;
+            if (card == ARRAY_MAX) {
+                toBits();
+                return add(low);
+            }
+            if (card == array.length) array = Arrays.copyOf(array, Math.min(ARRAY_MAX, card * 2));
+            System.arraycopy(array, i, array, i + 1, card - i);
+            array[i] = low;
+            card++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] &= ~(1L << low);
+                if (before == bits[low >>> 6]) return false;
+                if (--card <= ARRAY_MAX / 2) toArray();
+                return true;
+            }
+            int i = Arrays.binarySearch(array, 0, card, low);
+            if (i < 0) return false;
+            System.arraycopy(array, i + 1, array, i, card - i - 1);
+            card--;
+            return true;
+        }
+
+        private void toBits() {
+            long[] b = new long[1024];
+            for (int i = 0; i < card; i++) b[array[i] >>> 6] |= 1L << array[i];
+            bits = b;
+            array = null;
+        }
+
+        private Chunk toArray() {
+            char[] a = new char[Math.max(card, 4)];
+            int n = 0;
+            for (int w = 0; w < 1024; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    a[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            array = a;
+            bits = null;
+            return this;
+        }
+
+        Chunk and(Chunk o) {
+            if (bits != null && o.bits != null) {
+                long[] b = new long[1024];
+                int n = 0;
+                for (int w = 0; w < 1024; w++) n += Long.bitCount(b[w] = bits[w] & o.bits[w]);
+                return ofBits(b, n);
+            }
+            Chunk small = bits == null ? this : o, other = small == this ? o : this;
+            char[] a = new char[small.card];
+            int n = 0;
+            for (int i = 0; i < small.card; i++) {
+                if (other.contains(small.array[i])) a[n++] = small.array[i];
+            }
+            return ofArray(a, n);
+        }
+
+        Chunk or(Chunk o) {
+            if (bits == null && o.bits == null && card + o.card <= ARRAY_MAX) {
+                char[] a = new char[card + o.card];
+                int i = 0, j = 0, n = 0;
+                while (i < card && j < o.card) {
+                    char x = array[i], y = o.array[j];
+                    if (x == y) {
+                        a[n++] = x;
+                        i++;
+                        j++;
+                    } else if (x < y) {
+                        a[n++] = x;
+                        i++;
+                    } else {
+                        a[n++] = y;
+                        j++;
+                    }
+                }
+                while (i < card) a[n++] = array[i++];
+                while (j < o.card) a[n++] = o.array[j++];
+                return ofArray(a, n);
+            }
+            long[] b = bits != null ? bits.clone() : new long[1024];
+            if (bits == null) for (int i = 0; i < card; i++) b[array[i] >>> 6] |= 1L << array[i];
+            if (o.bits != null) {
+                for (int w = 0; w < 1024; w++) b[w] |= o.bits[w];
+            } else {
+                for (int i = 0; i < o.card; i++) b[o.array[i] >>> 6] |= 1L << o.array[i];
+            }
+            int n = 0;
+            for (long word : b) n += Long.bitCount(word);
+            return ofBits(b, n);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (bits != null) {
+                for (int w = 0; w < 1024; w++) {
+                    for (long word = bits[w]; word != 0; word &= word - 1) {
+                        action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                    }
+                }
+            } else {
+                for (int i = 0; i < card; i++) action.accept(high | array[i]);
+            }
+        }
+    }
+
+    private char[] keys = new char[0];
+    private Chunk[] chunks = new Chunk[0];
+    private int count = 0; // Chunks in use
+    private int cardinality = 0;
+
+    public boolean contains(int slot) {
+        int i = find((char) (slot >>> 16));
+        return i >= 0 && chunks[i].contains((char) slot);
+    }
+
+    public void add(int slot) {
+        char key = (char) (slot >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk(i, key, Chunk.ofArray(new char[4], 0));
+        }
+        if (chunks[i].add((char) slot)) cardinality++;
+    }
+
+    public void remove(int slot) {
+        int i = find((char) (slot >>> 16));
+        if (i < 0 || !chunks[i].remove((char) slot)) return;
+        cardinality--;
+        if (chunks[i].card == 0) {
+            System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+            System.arraycopy(chunks, i + 1, chunks, i, count - i - 1);
+            chunks[--count] = null;
+        }
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * The slots in both. Neither bitmap is changed.
+     */
+    public RowBitmap and(RowBitmap o) {
+        RowBitmap out = new RowBitmap();
+        int i = 0, j = 0;
+        while (i < count && j < o.count) {
+            if (keys[i] == o.keys[j]) {
+                Chunk c = chunks[i].and(o.chunks[j]);
+                if (c.card > 0) out.append(keys[i], c);
+                i++;
+                j++;
+            } else if (keys[i] < o.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The slots in either. Neither bitmap is changed.
+     */
+    public RowBitmap or(RowBitmap o) {
+        RowBitmap out = new RowBitmap();
+        int i = 0, j = 0;
+        while (i < count || j < o.count) {
+            if (j == o.count || (i < count && keys[i] < o.keys[j])) {
+                out.append(keys[i], chunks[i].or(Chunk.ofArray(new char[0], 0)));
+                i++;
+            } else if (i == count || o.keys[j] < keys[i]) {
+                out.append(o.keys[j], o.chunks[j].or(Chunk.ofArray(new char[0], 0)));
+                j++;
+            } else {
+                out.append(keys[i], chunks[i].or(o.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Every slot, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < count; i++) chunks[i].forEach(keys[i] << 16, action);
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    private void insertChunk(int i, char key, Chunk chunk) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, count * 2));
+            chunks = Arrays.copyOf(chunks, keys.length);
+        }
+        System.arraycopy(keys, i, keys, i + 1, count - i);
+        System.arraycopy(chunks, i, chunks, i + 1, count - i);
+        keys[i] = key;
+        chunks[i] = chunk;
+        count++;
+    }
+
+    // Adds a chunk after the last one (keys come in ascending order)
+    private void append(char key, Chunk chunk) {
+        insertChunk(count, key, chunk);
+        cardinality += chunk.card;
+    }
+}
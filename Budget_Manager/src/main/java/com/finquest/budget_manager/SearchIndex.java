@@ -0,0 +1,254 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Substring search over the titles and categories of the loaded
+ * transactions, for the search box in the Transactions view.
+ *
+ * Every row gets a slot, and every three-character piece (trigram) of its
+ * lower-cased "title category" text has a posting of the slots it occurs
+ * in. A query of three or more characters intersects the postings of its
+ * own trigrams, smallest first, and only the few slots left are checked
+ * with contains(). Shorter queries match most rows anyway and just check
+ * every slot. Prefix searches are substring searches, so they work the
+ * same way.
+ *
+ * The index follows DataStore's list like LedgerAggregates does, and
+ * DataStore reports in-place edits through update(). Only the trigrams of
+ * the changed row are touched. FX thread only.
+ */
+public class SearchIndex {
+
+    private static final int GRAM = 3;
+
+    // The slots one trigram occurs in. Small ones are an int array,
+    // dense ones a BitSet, whichever takes less memory.
+    private static final class Posting {
+        int[] slots = new int[4];
+        int size;
+        BitSet bits;
+
+        // The slot mustn't be in here yet (index() adds each trigram once)
+        void add(int slot) {
+            if (bits != null) {
+                if (!bits.get(slot)) size++;
+                bits.set(slot);
+                return;
+            }
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            if (bits != null) {
+                if (bits.get(slot)) size--;
+                bits.clear(slot);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+
+        // A BitSet once the array would be bigger than the bits for every slot
+        void pack(int slotCount) {
+            if (bits == null && size * 32L > slotCount && size > 64) {
+                bits = new BitSet(slotCount);
+                for (int i = 0; i < size; i++) bits.set(slots[i]);
+                slots = null;
+            }
+        }
+
+        BitSet toBitSet() {
+            if (bits != null) return (BitSet) bits.clone();
+            BitSet out = new BitSet();
+            for (int i = 0; i < size; i++) out.set(slots[i]);
+            return out;
+        }
+
+        // Keeps only the slots of 'into' that are in here
+        void retainIn(BitSet into) {
+            if (bits != null) {
+                into.and(bits);
+                return;
+            }
+            BitSet mine = new BitSet();
+            for (int i = 0; i < size; i++) if (into.get(slots[i])) mine.set(slots[i]);
+            into.and(mine);
+        }
+    }
+
+    private final Map<Long, Posting> postings = new HashMap<>();
+    private final Map<Long, Integer> slotOf = new HashMap<>(); // Transaction id -> slot
+    private String[] texts = new String[64]; // Indexed text per slot, null if free
+    private long[] ids = new long[64]; // Transaction id per slot
+    private int[] free = new int[16];
+    private int freeCount = 0;
+    private int end = 0;
+
+    public SearchIndex(ObservableList<Transaction> transactions) {
+        transactions.addListener(this::onChanged);
+        for (Transaction tx : transactions) add(tx);
+        System.out.println("SearchIndex: indexed " + slotOf.size() + " transactions, " + postings.size() + " trigrams");
+    }
+
+    /**
+     * Re-indexes a transaction that was changed in place.
+     */
+    public void update(Transaction tx) {
+        Integer slot = slotOf.get(tx.getId());
+        if (slot == null) {
+            add(tx);
+            return;
+        }
+        String text = textOf(tx);
+        if (text.equals(texts[slot])) return; // Amount or date edit
+        unindex(slot);
+        index(slot, text);
+    }
+
+    /**
+     * The ids of the rows whose title or category contains the query,
+     * for FilterIndex to turn into a bitmap of its own slots. The query
+     * must come from normalize() and not be empty.
+     */
+    public long[] matchingIds(String query) {
+        BitSet hits = search(query);
+        long[] out = new long[hits.cardinality()];
+        int n = 0;
+        for (int slot = hits.nextSetBit(0); slot >= 0; slot = hits.nextSetBit(slot + 1)) out[n++] = ids[slot];
+        return out;
+    }
+
+    /**
+     * The same test for a single row, for rows that change after the
+     * search (they're checked one at a time).
+     */
+    public static boolean matches(Transaction tx, String query) {
+        return textOf(tx).contains(query);
+    }
+
+    /**
+     * A query as the index compares it: trimmed and lower case.
+     */
+    public static String normalize(String query) {
+        return query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+    }
+
+    // The slots whose text contains q (already lower case)
+    private BitSet search(String q) {
+        BitSet hits;
+        if (q.length() < GRAM) {
+            hits = new BitSet(end);
+            for (int slot = 0; slot < end; slot++) {
+                if (texts[slot] != null && texts[slot].contains(q)) hits.set(slot);
+            }
+            return hits;
+        }
+        // Intersect from the rarest trigram down, so the set shrinks fast
+        Posting[] needed = new Posting[q.length() - GRAM + 1];
+        for (int i = 0; i < needed.length; i++) {
+            Posting p = postings.get(gram(q, i));
+            if (p == null || p.size == 0) return new BitSet();
+            needed[i] = p;
+        }
+        Arrays.sort(needed, (a, b) -> Integer.compare(a.size, b.size));
+        hits = needed[0].toBitSet();
+        for (int i = 1; i < needed.length && !hits.isEmpty(); i++) {
+            if (needed[i] != needed[i - 1]) needed[i].retainIn(hits);
+        }
+        // Every trigram matching doesn't mean they're in the right order
+        for (int slot = hits.nextSetBit(0); slot >= 0; slot = hits.nextSetBit(slot + 1)) {
+            if (!texts[slot].contains(q)) hits.clear(slot);
+        }
+        return hits;
+    }
+
+    private void onChanged(ListChangeListener.Change<? extends Transaction> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) continue;
+            for (Transaction tx : change.getRemoved()) {
+                Integer slot = slotOf.remove(tx.getId());
+                if (slot != null) release(slot);
+            }
+            for (Transaction tx : change.getAddedSubList()) add(tx);
+        }
+    }
+
+    private void add(Transaction tx) {
+        Integer old = slotOf.get(tx.getId());
+        if (old != null) release(old); // Same row added twice; index it once
+        int slot = freeCount > 0 ? free[--freeCount] : end++;
+        if (slot >= texts.length) {
+            texts = Arrays.copyOf(texts, texts.length * 2);
+            ids = Arrays.copyOf(ids, texts.length);
+        }
+        slotOf.put(tx.getId(), slot);
+        ids[slot] = tx.getId();
+        index(slot, textOf(tx));
+    }
+
+    private void release(int slot) {
+        unindex(slot);
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = slot;
+    }
+
+    private void index(int slot, String text) {
+        texts[slot] = text;
+        for (long g : grams(text)) {
+            Posting p = postings.computeIfAbsent(g, k -> new Posting());
+            p.add(slot);
+            p.pack(end);
+        }
+    }
+
+    private void unindex(int slot) {
+        String text = texts[slot];
+        texts[slot] = null;
+        if (text == null) return;
+        for (long g : grams(text)) {
+            Posting p = postings.get(g);
+            if (p == null) continue;
+            p.remove(slot);
+            if (p.size == 0) postings.remove(g);
+        }
+    }
+
+    // The distinct trigrams of a text
+    private static long[] grams(String text) {
+        if (text.length() < GRAM) return new long[0];
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) grams[i] = gram(text, i);
+        Arrays.sort(grams);
+        int n = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) grams[n++] = grams[i];
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    private static String textOf(Transaction tx) {
+        String title = tx.getTitle() != null ? tx.getTitle() : "";
+        String category = tx.getCategory() != null ? tx.getCategory() : "";
+        // The separator never appears in a query, so no trigram spans both fields
+        return (title + '\u0001' + category).toLowerCase(Locale.ROOT);
+    }
+
+    // Three chars packed into one key
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
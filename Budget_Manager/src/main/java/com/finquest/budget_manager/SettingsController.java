@@ -3,23 +3,14 @@ package com.finquest.budget_manager;
 
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.scene.Scene;
-import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.stage.Window;
 
 import java.net.URL;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
 
-public class SettingsController implements Initializable {
+public class SettingsController implements Initializable, ManagedView {
 
     @FXML private TextField monthlyBudgetField;
     @FXML private ComboBox<String> currencyComboBox;
@@ -34,17 +25,25 @@ public class SettingsController implements Initializable {
     // --- Reference to the main application for theme switching ---
     private BudgetApplication mainApp;
 
-    private static final String SETTINGS_FILE = "finquest_settings.txt";
-
     /**
      * Public setter to inject the main application instance
      */
+    @Override
     public void setMainApplication(BudgetApplication app) {
         this.mainApp = app;
         // Now that mainApp is set, load the budget from it
         loadSettings();
     }
 
+    /**
+     * The view is kept between visits; show the settings as they are now.
+     */
+    @Override
+    public void activate() {
+        loadSettings();
+        statusLabel.setText(" ");
+    }
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupCurrencyComboBox();
@@ -81,17 +80,17 @@ public class SettingsController implements Initializable {
     }
 
     /**
-     * Reads the settings file and applies values to the UI fields.
+     * Applies the saved settings to the UI fields.
      */
     private void loadSettings() {
-        Map<String, String> settings = readSettings();
+        SettingsStore settings = SettingsStore.getInstance();
 
         // 1. Load Monthly Budget from the BudgetManager
         // This ensures it's always in sync with the dashboard
         monthlyBudgetField.setText(String.valueOf(BudgetManager.getMonthlyBudget()));
 
         // 2. Load Currency and pre-select ComboBox
-        String currencyCode = settings.getOrDefault("CURRENCY", CurrencyUtil.getCurrencyCode());
+        String currencyCode = CurrencyUtil.getCurrencyCode();
         switch (currencyCode) {
             case "USD": currencyComboBox.setValue("USD ($)"); break;
             case "EUR": currencyComboBox.setValue("EUR (€)"); break;
@@ -101,7 +100,7 @@ public class SettingsController implements Initializable {
         }
 
         // 3. Load Theme
-        String theme = settings.getOrDefault("THEME", "Light");
+        String theme = settings.getTheme();
         if ("Dark".equals(theme) && darkThemeButton != null) {
             darkThemeButton.setSelected(true);
         } else if (lightThemeButton != null) {
@@ -139,18 +138,11 @@ public class SettingsController implements Initializable {
                 mainApp.applyThemeToScene(newTheme);
             }
 
-            // 4. Persist all settings to file
-            persistSettings(currencyCode, newTheme);
-
-            // 5. Refresh UI elements on other tabs
-            Scene scene = getScene();
-            if (scene != null) {
-                // Refresh all relevant tables/lists to show new currency symbol
-                refreshNodeIfPresent(scene, "#transactionsListView");
-                refreshNodeIfPresent(scene, "#expenseTableView");
-                refreshNodeIfPresent(scene, "#incomeTableView");
-                refreshNodeIfPresent(scene, "#transactionReportTable"); // Refresh reports table too
-            }
+            // 4. Remember the theme (budget and currency were saved by their managers)
+            SettingsStore.getInstance().setTheme(newTheme);
+
+            // 5. The other views redraw their amounts for a new currency
+            // themselves when they're shown again (see their activate())
 
             statusLabel.setText("Settings saved successfully!");
             statusLabel.setStyle("-fx-text-fill: #27AE60; -fx-padding: 5 8; -fx-background-color: rgba(39,174,96,0.08); -fx-background-radius: 8;");
@@ -165,70 +157,10 @@ public class SettingsController implements Initializable {
         }
     }
 
-    /**
-     * Reads the settings file into a simple Map
-     */
-    private Map<String, String> readSettings() {
-        Map<String, String> map = new HashMap<>();
-        try {
-            Path p = Path.of(SETTINGS_FILE);
-            if (Files.exists(p)) {
-                List<String> lines = Files.readAllLines(p);
-                for (String line : lines) {
-                    if (line == null || line.isBlank()) continue;
-                    int idx = line.indexOf('=');
-                    if (idx > 0) {
-                        map.put(line.substring(0, idx).trim(), line.substring(idx + 1).trim());
-                    }
-                }
-            }
-        } catch (Exception ignored) {}
-        return map;
-    }
-
-    /**
-     * Merges the new settings with existing ones and writes to the file.
-     */
-    private void persistSettings(String currencyCode, String theme) {
-        Map<String, String> settings = readSettings();
-
-        // Update with new values
-        // BUDGET is now saved by BudgetManager
-        settings.put("CURRENCY", currencyCode);
-        settings.put("THEME", theme); // Save the theme preference
-
-        // Write the new map back to the file
-        try (PrintWriter pw = new PrintWriter(new FileWriter(SETTINGS_FILE))) {
-            settings.forEach((k, v) -> pw.println(k + "=" + v));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Refreshes TableView or ListView nodes by ID.
-     */
-    private void refreshNodeIfPresent(Scene scene, String selector) {
-        try {
-            Node node = scene.lookup(selector);
-            if (node instanceof TableView) {
-                ((TableView<?>) node).refresh();
-            } else if (node instanceof ListView) {
-                ((ListView<?>) node).refresh();
-            }
-        } catch (Exception ignored) {}
-    }
-
     private String extractCode(String selection) {
         if (selection == null) return "PHP";
         int idx = selection.indexOf(" ");
         if (idx > 0) return selection.substring(0, idx);
         return selection;
     }
-
-    private Scene getScene() {
-        if (statusLabel != null && statusLabel.getScene() != null) return statusLabel.getScene();
-        if (monthlyBudgetField != null && monthlyBudgetField.getScene() != null) return monthlyBudgetField.getScene();
-        return null;
-    }
 }
\ No newline at end of file
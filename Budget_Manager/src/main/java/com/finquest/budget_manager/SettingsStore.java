@@ -0,0 +1,279 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton that owns finquest_settings.txt (KEY=value lines). Nothing
+ * else reads or writes that file.
+ *
+ * The file is parsed once, on first use, and getters answer from memory.
+ * Setters change the value in memory right away and queue a write; changes
+ * made within LINGER_MS of each other go out as one atomic replace of the
+ * whole file, on a background thread. Keys this class doesn't know about
+ * are kept as they are.
+ *
+ * A WatchService notices when something else changes the file (a text
+ * editor, a second window) and reloads it. Listeners hear about every
+ * value that changed, on the FX thread.
+ */
+public class SettingsStore {
+
+    public static final String MONTHLY_BUDGET = "MONTHLY_BUDGET";
+    public static final String CURRENCY = "CURRENCY";
+    public static final String THEME = "THEME";
+
+    public static final double DEFAULT_BUDGET = 2000.00;
+    public static final String DEFAULT_CURRENCY = "PHP";
+    public static final String DEFAULT_THEME = "Light";
+
+    private static final Path SETTINGS_FILE = Path.of("finquest_settings.txt");
+    private static final long LINGER_MS = 200;
+    private static final SettingsStore instance = new SettingsStore();
+
+    @FunctionalInterface
+    public interface SettingsListener {
+        void onSettingChanged(String key, String value);
+    }
+
+    // Guarded by this
+    private final Map<String, String> values = new LinkedHashMap<>();
+    private final Set<String> unsaved = new HashSet<>(); // Set here, not yet written
+    private String lastSeen = ""; // File content as we last wrote or read it
+    private boolean writeScheduled = false;
+
+    private final List<SettingsListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "finquest-settings");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private SettingsStore() {
+        String text = readFile();
+        if (text != null) {
+            lastSeen = text;
+            values.putAll(parse(text));
+        }
+        System.out.println("SettingsStore: loaded " + values.size() + " settings");
+        startWatching();
+    }
+
+    public static SettingsStore getInstance() {
+        return instance;
+    }
+
+    // --- Typed settings ---
+
+    public double getMonthlyBudget() {
+        String value = get(MONTHLY_BUDGET);
+        if (value == null || value.isEmpty()) return DEFAULT_BUDGET;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("SettingsStore: bad MONTHLY_BUDGET '" + value + "', using default.");
+            return DEFAULT_BUDGET;
+        }
+    }
+
+    public void setMonthlyBudget(double budget) {
+        set(MONTHLY_BUDGET, String.valueOf(budget));
+    }
+
+    public String getCurrency() {
+        String value = get(CURRENCY);
+        return value == null || value.isEmpty() ? DEFAULT_CURRENCY : value;
+    }
+
+    public void setCurrency(String code) {
+        set(CURRENCY, code);
+    }
+
+    public String getTheme() {
+        String value = get(THEME);
+        return value == null || value.isEmpty() ? DEFAULT_THEME : value;
+    }
+
+    public void setTheme(String theme) {
+        set(THEME, theme);
+    }
+
+    // --- Raw access ---
+
+    public synchronized String get(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Changes a setting and queues the file write. Listeners are called on
+     * the calling thread if the value actually changed.
+     */
+    public void set(String key, String value) {
+        synchronized (this) {
+            if (Objects.equals(values.get(key), value)) return;
+            values.put(key, value);
+            unsaved.add(key);
+            if (!writeScheduled) {
+                writeScheduled = true;
+                executor.schedule(this::write, LINGER_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        for (SettingsListener listener : listeners) {
+            listener.onSettingChanged(key, value);
+        }
+    }
+
+    public void addListener(SettingsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SettingsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Blocks until queued changes are written. Meant for exit.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::write).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // --- File I/O (settings thread) ---
+
+    private void write() {
+        String text;
+        Set<String> written;
+        synchronized (this) {
+            writeScheduled = false;
+            if (unsaved.isEmpty()) return;
+            StringBuilder sb = new StringBuilder();
+            values.forEach((k, v) -> sb.append(k).append('=').append(v).append(System.lineSeparator()));
+            text = sb.toString();
+            lastSeen = text;
+            written = new HashSet<>(unsaved);
+            unsaved.clear();
+        }
+        try {
+            Path temp = SETTINGS_FILE.resolveSibling(SETTINGS_FILE.getFileName() + ".tmp");
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, SETTINGS_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("SettingsStore: could not save settings. " + e.getMessage());
+            // Still unsaved, so the next change or flush() writes them again
+            synchronized (this) {
+                unsaved.addAll(written);
+            }
+        }
+    }
+
+    // Re-reads the file after an outside change. Values set here that
+    // haven't been written yet win over the file.
+    private void reload() {
+        String text = readFile();
+        if (text == null) return;
+        Map<String, String> changed = new LinkedHashMap<>();
+        synchronized (this) {
+            if (text.equals(lastSeen)) return; // Our own write
+            lastSeen = text;
+            parse(text).forEach((k, v) -> {
+                if (!unsaved.contains(k) && !Objects.equals(values.get(k), v)) {
+                    values.put(k, v);
+                    changed.put(k, v);
+                }
+            });
+        }
+        if (changed.isEmpty()) return;
+        System.out.println("SettingsStore: reloaded " + changed.keySet() + " from " + SETTINGS_FILE);
+        runOnFxThread(() -> changed.forEach((k, v) -> {
+            for (SettingsListener listener : listeners) listener.onSettingChanged(k, v);
+        }));
+    }
+
+    private static String readFile() {
+        try {
+            return Files.exists(SETTINGS_FILE) ? Files.readString(SETTINGS_FILE, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            System.out.println("SettingsStore: could not read settings. " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, String> parse(String text) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String line : text.split("\\R")) {
+            if (line.isBlank()) continue;
+            int idx = line.indexOf('=');
+            if (idx > 0) map.put(line.substring(0, idx).trim(), line.substring(idx + 1).trim());
+        }
+        return map;
+    }
+
+    // Watches the folder the file is in; editors often replace the file
+    // rather than write to it, so creates count as well as modifies
+    private void startWatching() {
+        Path dir = SETTINGS_FILE.toAbsolutePath().getParent();
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            System.out.println("SettingsStore: not watching " + SETTINGS_FILE + " for changes. " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean ours = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (SETTINGS_FILE.getFileName().equals(event.context())) ours = true;
+                    }
+                    key.reset();
+                    // Give the other program time to finish; repeat reloads are no-ops
+                    if (ours) executor.schedule(this::reload, LINGER_MS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Exiting
+            }
+        }, "finquest-settings-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void runOnFxThread(Runnable r) {
+        try {
+            Platform.runLater(r);
+        } catch (IllegalStateException e) {
+            r.run(); // FX isn't running (tools, tests)
+        }
+    }
+}
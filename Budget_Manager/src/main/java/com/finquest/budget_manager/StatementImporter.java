@@ -0,0 +1,342 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Imports a bank statement (CSV, OFX/QFX or QIF) on a background thread.
+ *
+ * The file is parsed as a stream, so memory use doesn't depend on its
+ * size. Rows are handed to the FX thread in batches of BATCH_SIZE: each
+ * batch is one addAll() (one list change event) followed by one save().
+ * At most MAX_BATCHES_IN_FLIGHT batches wait for the FX thread at a time,
+ * so a fast parser can't pile up work faster than the UI takes it.
+ *
+ * The task's value is the number of imported transactions. If it's
+ * cancelled, the batches that were already added stay.
+ */
+public class StatementImporter extends Task<Integer> {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_BATCHES_IN_FLIGHT = 2;
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("M/d/yyyy"),
+            DateTimeFormatter.ofPattern("M/d/yy"),
+            DateTimeFormatter.ofPattern("yyyyMMdd")
+    };
+
+    private final Path file;
+    private final Semaphore inFlight = new Semaphore(MAX_BATCHES_IN_FLIGHT);
+    private List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+    private long fileSize;
+    private CountingInputStream counter;
+    private int imported = 0;
+    private int skipped = 0;
+
+    public StatementImporter(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * True if the file extension is one of the formats we can read.
+     */
+    public static boolean isSupported(Path file) {
+        String ext = extensionOf(file);
+        return ext.equals("csv") || ext.equals("ofx") || ext.equals("qfx") || ext.equals("qif");
+    }
+
+    /**
+     * Rows that couldn't be read (bad date or amount). Valid after the task ends.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        fileSize = Math.max(1, Files.size(file));
+        counter = new CountingInputStream(Files.newInputStream(file));
+        try (Reader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8))) {
+            switch (extensionOf(file)) {
+                case "csv": readCsv(reader); break;
+                case "ofx": case "qfx": readOfx(reader); break;
+                case "qif": readQif(reader); break;
+                default: throw new IOException("Unsupported statement format: " + file.getFileName());
+            }
+        }
+        flushBatch();
+
+        // Wait for the FX thread to take the last batches
+        inFlight.acquire(MAX_BATCHES_IN_FLIGHT);
+        inFlight.release(MAX_BATCHES_IN_FLIGHT);
+        updateProgress(1, 1);
+        updateMessage("Imported " + imported + " transactions");
+        System.out.println("StatementImporter: imported " + imported + ", skipped " + skipped + " from " + file.getFileName());
+        return imported;
+    }
+
+    // --- CSV: header row, then one transaction per record ---
+
+    private void readCsv(Reader reader) throws IOException, InterruptedException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) return;
+        int date = column(header, "date", "posted");
+        int title = column(header, "title", "description", "payee", "name", "memo");
+        int amount = column(header, "amount");
+        int debit = column(header, "debit", "withdrawal");
+        int credit = column(header, "credit", "deposit");
+        int category = column(header, "category");
+        int type = column(header, "type");
+        if (date < 0 || (amount < 0 && debit < 0 && credit < 0)) {
+            throw new IOException("CSV needs a date column and an amount (or debit/credit) column");
+        }
+
+        List<String> row;
+        while ((row = readCsvRecord(reader)) != null && !isCancelled()) {
+            if (row.size() == 1 && row.get(0).isBlank()) continue;
+            Double signed;
+            if (amount >= 0) {
+                signed = parseAmount(field(row, amount));
+            } else {
+                // Separate debit/credit columns; only one of them is filled in per row
+                Double out = parseAmount(field(row, debit));
+                Double in = parseAmount(field(row, credit));
+                signed = out != null && out != 0 ? -Math.abs(out) : in;
+            }
+            emit(field(row, title), field(row, category), field(row, type), signed, parseDate(field(row, date)));
+        }
+    }
+
+    // Reads one CSV record, handling quoted fields with commas, quotes and newlines
+    private static List<String> readCsvRecord(Reader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        int c = reader.read();
+        if (c < 0) return null;
+        while (c >= 0) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        sb.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    sb.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                sb.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    private static int column(List<String> header, String... names) {
+        for (String name : names) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().toLowerCase(Locale.ROOT).contains(name)) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> row, int index) {
+        return index >= 0 && index < row.size() ? row.get(index).trim() : null;
+    }
+
+    // --- OFX / QFX: <STMTTRN> blocks, SGML or XML style ---
+
+    private void readOfx(Reader reader) throws IOException, InterruptedException {
+        Scanner tags = new Scanner(reader).useDelimiter("<");
+        boolean inTransaction = false;
+        String name = null, memo = null, amount = null, posted = null;
+        while (tags.hasNext() && !isCancelled()) {
+            String token = tags.next();
+            int close = token.indexOf('>');
+            if (close < 0) continue;
+            String tag = token.substring(0, close).trim().toUpperCase(Locale.ROOT);
+            String value = token.substring(close + 1).trim();
+
+            if (tag.equals("STMTTRN")) {
+                inTransaction = true;
+                name = memo = amount = posted = null;
+            } else if (tag.equals("/STMTTRN") && inTransaction) {
+                inTransaction = false;
+                String title = name != null && !name.isEmpty() ? name : memo;
+                LocalDate date = posted != null && posted.length() >= 8 ? parseDate(posted.substring(0, 8)) : null;
+                emit(title, null, null, parseAmount(amount), date);
+            } else if (inTransaction) {
+                switch (tag) {
+                    case "NAME": name = unescapeXml(value); break;
+                    case "MEMO": memo = unescapeXml(value); break;
+                    case "TRNAMT": amount = value; break;
+                    case "DTPOSTED": posted = value; break;
+                    default: break;
+                }
+            }
+        }
+        if (tags.ioException() != null) throw tags.ioException();
+    }
+
+    private static String unescapeXml(String s) {
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&");
+    }
+
+    // --- QIF: one field per line, records end with ^ ---
+
+    private void readQif(Reader reader) throws IOException, InterruptedException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String payee = null, memo = null, category = null, amount = null, date = null;
+        String line;
+        while ((line = lines.readLine()) != null && !isCancelled()) {
+            if (line.isEmpty() || line.startsWith("!")) continue;
+            String value = line.substring(1).trim();
+            switch (line.charAt(0)) {
+                case 'D': date = value.replace('\'', '/').replace(' ', '0'); break;
+                case 'T': case 'U': amount = value; break;
+                case 'P': payee = value; break;
+                case 'M': memo = value; break;
+                // [Account] is a transfer, not a category
+                case 'L': category = value.startsWith("[") ? null : value; break;
+                case '^':
+                    emit(payee != null ? payee : memo, category, null, parseAmount(amount), parseDate(date));
+                    payee = memo = category = amount = date = null;
+                    break;
+                default: break;
+            }
+        }
+    }
+
+    // --- Shared ---
+
+    /**
+     * Turns one parsed row into a Transaction and adds it to the batch.
+     * Negative amounts are expenses unless the file says otherwise.
+     */
+    private void emit(String title, String category, String type, Double signedAmount, LocalDate date)
+            throws InterruptedException {
+        if (signedAmount == null || date == null) {
+            skipped++;
+            return;
+        }
+        String kind;
+        if ("income".equalsIgnoreCase(type) || "expense".equalsIgnoreCase(type)) {
+            kind = type.substring(0, 1).toUpperCase(Locale.ROOT) + type.substring(1).toLowerCase(Locale.ROOT);
+        } else {
+            kind = signedAmount < 0 ? "Expense" : "Income";
+        }
+        if (category == null || category.isEmpty()) category = "Income".equals(kind) ? "Income" : "Other";
+        if (title == null || title.isEmpty()) title = "Imported transaction";
+
+        batch.add(new Transaction(title, category, kind, Math.abs(signedAmount), date));
+        if (batch.size() >= BATCH_SIZE) flushBatch();
+    }
+
+    // Hands the current batch to the FX thread: one addAll, one save
+    private void flushBatch() throws InterruptedException {
+        if (batch.isEmpty()) return;
+        List<Transaction> ready = batch;
+        batch = new ArrayList<>(BATCH_SIZE);
+        inFlight.acquire();
+        Platform.runLater(() -> {
+            try {
+                DataStore.getInstance().addTransactions(ready);
+                DataStore.getInstance().save();
+            } finally {
+                inFlight.release();
+            }
+        });
+        imported += ready.size();
+        updateProgress(counter.count, fileSize);
+        updateMessage("Imported " + imported + " transactions…");
+    }
+
+    private static Double parseAmount(String text) {
+        if (text == null || text.isBlank()) return null;
+        String s = text.trim();
+        boolean negative = s.startsWith("(") && s.endsWith(")"); // Accounting style (12.50)
+        s = s.replaceAll("[^0-9.\\-]", "");
+        try {
+            double value = Double.parseDouble(s);
+            return negative ? -Math.abs(value) : value;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate parseDate(String text) {
+        if (text == null || text.isBlank()) return null;
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(text.trim(), format);
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counts the bytes read so progress can be reported against the file size.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
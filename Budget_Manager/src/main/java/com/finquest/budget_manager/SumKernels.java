@@ -0,0 +1,75 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+/**
+ * The inner loops of TransactionColumns' queries: sum and count the rows
+ * that are selected, dated in [from, to) and (optionally) in one category.
+ *
+ * Rows are picked with a selection bitmap (long words, bit i = row i) so
+ * the type and "is this row in use" checks are done a word at a time by
+ * the caller. With the jdk.incubator.vector module present (run with
+ * --add-modules jdk.incubator.vector) the loop runs on VectorSums, several
+ * rows per instruction; otherwise on the plain loop below, which gives
+ * the same result. -Dfinquest.vector=false forces the plain loop.
+ */
+public final class SumKernels {
+
+    static final boolean VECTORIZED = vectorAvailable();
+
+    private SumKernels() {
+    }
+
+    private static boolean vectorAvailable() {
+        if ("false".equalsIgnoreCase(System.getProperty("finquest.vector"))) return false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            System.out.println("SumKernels: Vector API not available, using scalar loops");
+            return false;
+        }
+        try {
+            boolean usable = VectorSums.probe();
+            System.out.println("SumKernels: " + (usable ? "using the Vector API" : "Vector API of no use on this CPU, using scalar loops"));
+            return usable;
+        } catch (RuntimeException | LinkageError e) {
+            // e.g. ExceptionInInitializerError when VectorSums can't pick its shapes
+            System.out.println("SumKernels: Vector API failed to start (" + e + "), using scalar loops");
+            return false;
+        }
+    }
+
+    /**
+     * Sums amounts[i] over the rows i < n whose bit is set in select, whose
+     * day is in [from, to) and, unless category is -1, whose category is
+     * that id.
+     * @param out receives {sum, count}
+     */
+    public static void sumAndCount(long[] amounts, int[] days, int[] categories, long[] select, int n,
+                                   int from, int to, int category, long[] out) {
+        if (VECTORIZED) VectorSums.sumAndCount(amounts, days, categories, select, n, from, to, category, out);
+        else scalarSumAndCount(amounts, days, categories, select, n, 0, from, to, category, out);
+    }
+
+    /**
+     * The plain loop, from row 'start' on. VectorSums uses it for the rows
+     * left over after the last full vector.
+     */
+    static void scalarSumAndCount(long[] amounts, int[] days, int[] categories, long[] select, int n, int start,
+                                  int from, int to, int category, long[] out) {
+        long sum = 0, count = 0;
+        for (int w = start >>> 6; w < select.length && (w << 6) < n; w++) {
+            long bits = select[w];
+            if (w == start >>> 6) bits &= -1L << (start & 63);
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (i >= n) break;
+                int day = days[i];
+                if (day < from || day >= to) continue;
+                if (category != -1 && categories[i] != category) continue;
+                sum += amounts[i];
+                count++;
+            }
+        }
+        out[0] += sum;
+        out[1] += count;
+    }
+}
@@ -0,0 +1,259 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.geometry.Point2D;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Income and expense bars over a time axis that can be zoomed (mouse
+ * wheel) and panned (drag); a double-click shows the whole range again.
+ *
+ * The bars are never one per transaction day over the whole history:
+ * the visible window is cut into as few buckets as the chart has room
+ * for, at the finest resolution that fits (a day, week, month, quarter
+ * or year per bar), so the number of bar nodes stays bounded however long
+ * the ledger is. Each bucket is one LedgerAggregates.getBetween() lookup
+ * in the DateIndex, so finer levels are worked out only when the window
+ * gets small enough to show them, without going through transactions.
+ * FX thread only.
+ */
+public class TimeBarChart {
+
+    /**
+     * How much time one bar covers.
+     */
+    public enum Resolution {
+        DAY("Day"), WEEK("Week"), MONTH("Month"), QUARTER("Quarter"), YEAR("Year");
+
+        private final String label;
+
+        Resolution(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * First day of the bucket the date is in.
+         */
+        LocalDate start(LocalDate date) {
+            switch (this) {
+                case DAY: return date;
+                case WEEK: return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH: return date.withDayOfMonth(1);
+                case QUARTER: return date.withDayOfMonth(1).withMonth((date.getMonthValue() - 1) / 3 * 3 + 1);
+                default: return date.withDayOfYear(1);
+            }
+        }
+
+        // First day of the bucket after the one starting on the given day
+        LocalDate next(LocalDate start) {
+            switch (this) {
+                case DAY: return start.plusDays(1);
+                case WEEK: return start.plusWeeks(1);
+                case MONTH: return start.plusMonths(1);
+                case QUARTER: return start.plusMonths(3);
+                default: return start.plusYears(1);
+            }
+        }
+
+        String name(LocalDate start) {
+            switch (this) {
+                case DAY: return start.toString();
+                case WEEK: return String.format("%d-W%02d", start.get(IsoFields.WEEK_BASED_YEAR), start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                case MONTH: return YearMonth.from(start).toString();
+                case QUARTER: return start.getYear() + "-Q" + start.get(IsoFields.QUARTER_OF_YEAR);
+                default: return String.valueOf(start.getYear());
+            }
+        }
+    }
+
+    // Room a bar pair needs, and the bounds on how many the chart shows
+    private static final double MIN_BAR_WIDTH = 28;
+    private static final int MIN_BARS = 6;
+    private static final int MAX_BARS = 60;
+    private static final int MIN_WINDOW_DAYS = 7;
+    private static final double ZOOM_STEP = 1.25;
+
+    private final BarChart<String, Number> chart;
+    private final XYChart.Series<String, Number> incomeSeries;
+    private final XYChart.Series<String, Number> expenseSeries;
+
+    // The whole range [rangeFrom, rangeTo) and the visible part of it [viewFrom, viewTo)
+    private LocalDate rangeFrom, rangeTo;
+    private LocalDate viewFrom, viewTo;
+    private boolean showIncome = true;
+    private boolean showExpense = true;
+    private Resolution resolution;
+
+    // Where a drag started, and the window at the time
+    private double dragX;
+    private LocalDate dragFrom;
+
+    public TimeBarChart(BarChart<String, Number> chart,
+                        XYChart.Series<String, Number> incomeSeries,
+                        XYChart.Series<String, Number> expenseSeries) {
+        this.chart = chart;
+        this.incomeSeries = incomeSeries;
+        this.expenseSeries = expenseSeries;
+
+        chart.setOnScroll(this::onScroll);
+        chart.setOnMousePressed(this::onPressed);
+        chart.setOnMouseDragged(this::onDragged);
+        chart.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) resetZoom();
+        });
+        // A wider chart has room for finer bars
+        chart.widthProperty().addListener((obs, oldVal, newVal) -> refresh());
+    }
+
+    /**
+     * Shows the transactions dated from the given day (null = from the
+     * first month with any) up to the end of this month, or of the last
+     * month with any if that's later. The zoom is kept if the range is the
+     * same as before.
+     */
+    public void show(LocalDate from, boolean showIncome, boolean showExpense) {
+        NavigableMap<YearMonth, LedgerAggregates.Cell> months = DataStore.getInstance().getAggregates().getMonths();
+        YearMonth last = YearMonth.now();
+        if (!months.isEmpty() && months.lastKey().isAfter(last)) last = months.lastKey();
+        LocalDate to = last.plusMonths(1).atDay(1);
+        if (from == null) from = months.isEmpty() ? YearMonth.now().atDay(1) : months.firstKey().atDay(1);
+
+        this.showIncome = showIncome;
+        this.showExpense = showExpense;
+        if (!from.equals(rangeFrom) || !to.equals(rangeTo)) {
+            rangeFrom = from;
+            rangeTo = to;
+            viewFrom = from;
+            viewTo = to;
+        }
+        refresh();
+    }
+
+    /**
+     * Shows the whole range again.
+     */
+    public void resetZoom() {
+        if (rangeFrom == null) return;
+        setWindow(rangeFrom, rangeTo);
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Buckets the visible window at the finest resolution there's room
+     * for and brings the series up to date (see ChartUtil.setSeries).
+     */
+    public void refresh() {
+        if (viewFrom == null) return;
+        int maxBars = maxBars();
+        resolution = Resolution.YEAR;
+        for (Resolution r : Resolution.values()) {
+            if (buckets(r, maxBars) <= maxBars) {
+                resolution = r;
+                break;
+            }
+        }
+
+        Map<String, Double> income = new LinkedHashMap<>();
+        Map<String, Double> expenses = new LinkedHashMap<>();
+        LedgerAggregates totals = DataStore.getInstance().getAggregates();
+        for (LocalDate start = resolution.start(viewFrom); start.isBefore(viewTo); start = resolution.next(start)) {
+            // Buckets at the ends of the range only count the part inside it
+            LocalDate from = start.isBefore(rangeFrom) ? rangeFrom : start;
+            LocalDate next = resolution.next(start);
+            LocalDate to = next.isAfter(rangeTo) ? rangeTo : next;
+            LedgerAggregates.Cell cell = totals.getBetween(from, to);
+            String name = resolution.name(start);
+            income.put(name, showIncome ? cell.getIncome() : 0.0);
+            expenses.put(name, showExpense ? cell.getExpenses() : 0.0);
+        }
+        chart.getXAxis().setLabel(resolution.getLabel());
+        ChartUtil.setSeries(incomeSeries, income);
+        ChartUtil.setSeries(expenseSeries, expenses);
+    }
+
+    // How many bars fit at the chart's current width
+    private int maxBars() {
+        double width = chart.getXAxis().getWidth() > 0 ? chart.getXAxis().getWidth() : chart.getWidth();
+        if (width <= 0) return MAX_BARS;
+        return Math.max(MIN_BARS, Math.min(MAX_BARS, (int) (width / MIN_BAR_WIDTH)));
+    }
+
+    // Buckets the window takes at a resolution, counting no further than limit + 1
+    private int buckets(Resolution r, int limit) {
+        int n = 0;
+        for (LocalDate start = r.start(viewFrom); start.isBefore(viewTo) && n <= limit; start = r.next(start)) n++;
+        return n;
+    }
+
+    private void onScroll(ScrollEvent e) {
+        if (viewFrom == null || e.getDeltaY() == 0) return;
+        long span = ChronoUnit.DAYS.between(viewFrom, viewTo);
+        long newSpan = Math.round(e.getDeltaY() > 0 ? span / ZOOM_STEP : span * ZOOM_STEP);
+        newSpan = Math.max(MIN_WINDOW_DAYS, newSpan);
+        // Keep the day under the pointer where it is
+        double at = axisFraction(e.getSceneX(), e.getSceneY());
+        LocalDate anchor = viewFrom.plusDays(Math.round(span * at));
+        LocalDate from = anchor.minusDays(Math.round(newSpan * at));
+        // Past the zoom limits the wheel scrolls the page as usual
+        if (setWindow(from, from.plusDays(newSpan))) e.consume();
+    }
+
+    private void onPressed(MouseEvent e) {
+        dragX = e.getSceneX();
+        dragFrom = viewFrom;
+    }
+
+    private void onDragged(MouseEvent e) {
+        if (dragFrom == null || viewFrom == null) return;
+        Axis<String> axis = chart.getXAxis();
+        if (axis.getWidth() <= 0) return;
+        long span = ChronoUnit.DAYS.between(viewFrom, viewTo);
+        long shift = Math.round((dragX - e.getSceneX()) / axis.getWidth() * span);
+        LocalDate from = dragFrom.plusDays(shift);
+        setWindow(from, from.plusDays(span));
+        e.consume();
+    }
+
+    // Where a point falls along the x axis, from 0 (left) to 1 (right)
+    private double axisFraction(double sceneX, double sceneY) {
+        Axis<String> axis = chart.getXAxis();
+        if (axis.getWidth() <= 0) return 0.5;
+        Point2D p = axis.sceneToLocal(sceneX, sceneY);
+        return Math.max(0, Math.min(1, p.getX() / axis.getWidth()));
+    }
+
+    // Moves the window inside the range, keeping its length where it can; false if it didn't move
+    private boolean setWindow(LocalDate from, LocalDate to) {
+        long span = Math.min(ChronoUnit.DAYS.between(from, to), ChronoUnit.DAYS.between(rangeFrom, rangeTo));
+        if (from.isBefore(rangeFrom)) from = rangeFrom;
+        if (from.plusDays(span).isAfter(rangeTo)) from = rangeTo.minusDays(span);
+        to = from.plusDays(span);
+        if (from.equals(viewFrom) && to.equals(viewTo)) return false;
+        viewFrom = from;
+        viewTo = to;
+        refresh();
+        return true;
+    }
+}
@@ -1,6 +1,11 @@
 //Esguerra
 package com.finquest.budget_manager;
 
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -8,74 +13,230 @@ import java.time.format.DateTimeFormatter;
 public class Transaction implements Serializable {
 
     private static final long serialVersionUID = 1L; // For serialization
+    private long id; // Stable key used by the journal; assigned by DataStore
     private String title;
     private String category;
     private String type; // "Income" or "Expense"
     private double amount;
     private LocalDate date;
+    // Worked out from category and type when they're set (or on first use
+    // after deserialization)
+    private transient Category categoryInfo;
+    private transient TransactionKind kind;
+    // Set while the values live in a TransactionColumns row instead of the
+    // fields above (which are cleared then)
+    private transient TransactionColumns columns;
+    private transient int row;
+    // Properties for the cells showing this row, made the first time one
+    // is asked for (most rows are never on screen)
+    private transient Observed observed;
+
+    // One per property, null until asked for; the setters keep them current
+    private static final class Observed {
+        ReadOnlyStringWrapper title;
+        ReadOnlyStringWrapper category;
+        ReadOnlyObjectWrapper<TransactionKind> kind;
+        ReadOnlyObjectWrapper<Double> amount;
+        ReadOnlyObjectWrapper<LocalDate> date;
+    }
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
 
     public Transaction(String title, String category, String type, double amount, LocalDate date) {
         this.title = title;
-        this.category = category;
-        this.type = type;
+        setCategory(category);
+        setType(type);
         this.amount = amount;
         this.date = date;
     }
 
     // --- Getters ---
+    public long getId() {
+        return id;
+    }
+
     public String getTitle() {
-        return title;
+        return columns != null ? columns.getTitle(row) : title;
     }
 
     public String getCategory() {
-        return category;
+        return columns != null ? columns.getCategory(row).getName() : category;
     }
 
     public String getType() {
-        return type;
+        return columns != null ? columns.getType(row) : type;
+    }
+
+    /**
+     * The registry entry for this transaction's category (Category.NONE if
+     * it has none).
+     */
+    public Category getCategoryInfo() {
+        if (columns != null) return columns.getCategory(row);
+        if (categoryInfo == null) categoryInfo = Category.of(category);
+        return categoryInfo;
+    }
+
+    public TransactionKind getKind() {
+        if (columns != null) return columns.getKind(row);
+        if (kind == null) kind = TransactionKind.of(type);
+        return kind;
+    }
+
+    public boolean isIncome() {
+        return getKind() == TransactionKind.INCOME;
     }
 
     public double getAmount() {
-        return amount;
+        return columns != null ? columns.getAmount(row) : amount;
     }
 
     public LocalDate getDate() {
-        return date;
+        return columns != null ? columns.getDate(row) : date;
     }
 
     // --- Setters ---
+    // Only DataStore hands out ids, so this stays package-private
+    void setId(long id) {
+        this.id = id;
+    }
+
     public void setTitle(String title) {
-        this.title = title;
+        if (columns != null) columns.setTitle(row, title);
+        else this.title = title;
+        if (observed != null && observed.title != null) observed.title.set(getTitle());
     }
 
     public void setCategory(String category) {
-        this.category = category;
+        // Rows in the same category share the registry's copy of the name
+        Category info = Category.of(category);
+        if (columns != null) {
+            columns.setCategory(row, info);
+        } else {
+            this.categoryInfo = info;
+            this.category = info.getName();
+        }
+        if (observed != null && observed.category != null) observed.category.set(getCategory());
     }
 
     public void setType(String type) {
-        this.type = type;
+        if (columns != null) {
+            columns.setType(row, type);
+        } else {
+            this.type = type;
+            this.kind = TransactionKind.of(type);
+        }
+        if (observed != null && observed.kind != null) observed.kind.set(getKind());
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        if (columns != null) columns.setAmount(row, amount);
+        else this.amount = amount;
+        if (observed != null && observed.amount != null) observed.amount.set(getAmount());
     }
 
     public void setDate(LocalDate date) {
-        this.date = date;
+        if (columns != null) columns.setDate(row, date);
+        else this.date = date;
+        if (observed != null && observed.date != null) observed.date.set(getDate());
+    }
+
+    // --- Properties ---
+    // Read-only: changes go through the setters above, which update both
+    // the values (wherever they live) and these. For binding table cells
+    // directly instead of PropertyValueFactory, so an edit redraws only
+    // the cells whose value changed. FX thread only.
+
+    public ReadOnlyStringProperty titleProperty() {
+        Observed o = observed();
+        if (o.title == null) o.title = new ReadOnlyStringWrapper(this, "title", getTitle());
+        return o.title.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty categoryProperty() {
+        Observed o = observed();
+        if (o.category == null) o.category = new ReadOnlyStringWrapper(this, "category", getCategory());
+        return o.category.getReadOnlyProperty();
+    }
+
+    public ReadOnlyObjectProperty<TransactionKind> kindProperty() {
+        Observed o = observed();
+        if (o.kind == null) o.kind = new ReadOnlyObjectWrapper<>(this, "kind", getKind());
+        return o.kind.getReadOnlyProperty();
+    }
+
+    public ReadOnlyObjectProperty<Double> amountProperty() {
+        Observed o = observed();
+        if (o.amount == null) o.amount = new ReadOnlyObjectWrapper<>(this, "amount", getAmount());
+        return o.amount.getReadOnlyProperty();
+    }
+
+    public ReadOnlyObjectProperty<LocalDate> dateProperty() {
+        Observed o = observed();
+        if (o.date == null) o.date = new ReadOnlyObjectWrapper<>(this, "date", getDate());
+        return o.date.getReadOnlyProperty();
+    }
+
+    private Observed observed() {
+        if (observed == null) observed = new Observed();
+        return observed;
+    }
+
+    // --- Column store (see TransactionColumns) ---
+
+    TransactionColumns getColumns() {
+        return columns;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    // The values have been copied into the row; drop our own
+    void attach(TransactionColumns columns, int row) {
+        this.columns = columns;
+        this.row = row;
+        title = category = type = null;
+        date = null;
+        categoryInfo = null;
+        kind = null;
+    }
+
+    // Takes the values back before the row is freed
+    void detach() {
+        TransactionColumns c = columns;
+        title = c.getTitle(row);
+        categoryInfo = c.getCategory(row);
+        category = categoryInfo.getName();
+        type = c.getType(row);
+        kind = c.getKind(row);
+        amount = c.getAmount(row);
+        date = c.getDate(row);
+        columns = null;
+    }
+
+    // A view has nothing in its own fields, so serialize a detached copy
+    private Object writeReplace() {
+        return columns != null ? copy() : this;
+    }
+
+    // Detached copy for the background writer, which must not read live objects
+    Transaction copy() {
+        Transaction tx = new Transaction(getTitle(), getCategory(), getType(), getAmount(), getDate());
+        tx.id = id;
+        return tx;
     }
 
     // --- Formatter Utility ---
     public String getFormattedDate() {
-        return date.format(DATE_FORMATTER);
+        return getDate().format(DATE_FORMATTER);
     }
 
     @Override
     public String toString() {
         return String.format("%s (%s): %s %s",
                 getFormattedDate(), getCategory(),
-                ("Income".equals(type) ? "+" : "-"),
+                getKind().getSign(),
                 CurrencyUtil.formatCurrency(getAmount()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,319 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The loaded transactions as parallel primitive arrays, one slot per row:
+ * amounts in cents (long), dates as epoch days (int), categories as
+ * Category ids (int) and a bit for income. Titles are the only per-row
+ * objects left.
+ *
+ * A Transaction added here becomes a view: its getters and setters go to
+ * the arrays and its own object fields are cleared. remove() copies the
+ * values back first, so the object still works on its own afterwards
+ * (undo, duplicate). Freed rows are reused.
+ *
+ * This does not save memory. DataStore's list, the FilterIndex
+ * selections and views[] still hold one full Transaction per row, because
+ * the tables and indexes work on Transaction objects. The LocalDate each
+ * row drops is about what the arrays add per row. Making rows handles
+ * that are created only when needed would mean a list and selections
+ * backed by the columns, which this class doesn't do. What it's for is
+ * the queries: they scan the arrays instead of the objects, and count()
+ * and sum() run on SumKernels.
+ *
+ * Amounts are kept in cents. The few that have more decimals (typed in, or
+ * imported) also keep their exact value on the side, like the type strings
+ * in otherTypes, so nothing that's saved is ever changed. Turned on with
+ * DataStore.useColumnStore(); FX thread only, like the list it mirrors.
+ */
+public class TransactionColumns implements TransactionRepository {
+
+    private static final int NO_DATE = LedgerFile.NO_DATE;
+
+    private long[] amounts = new long[64];
+    private int[] days = new int[64];
+    private int[] categories = new int[64];
+    private String[] titles = new String[64];
+    private Transaction[] views = new Transaction[64];
+    private final BitSet income = new BitSet();
+    private final BitSet live = new BitSet();
+    // Type strings other than the kind's own label ("expense", "Transfer"), by row
+    private final Map<Integer, String> otherTypes = new HashMap<>();
+    // Exact amounts of the rows that aren't a whole number of cents, by row;
+    // amounts[] holds them rounded
+    private final Map<Integer, Double> otherAmounts = new HashMap<>();
+    private int[] free = new int[16];
+    private int freeCount = 0;
+    private int end = 0; // Rows at or after this were never used
+    private int size = 0;
+
+    /**
+     * Moves a transaction's values into a free row and turns it into a view.
+     */
+    public void add(Transaction tx) {
+        if (tx.getColumns() != null) return; // Already a view (here or elsewhere)
+        int row = freeCount > 0 ? free[--freeCount] : end++;
+        if (row >= amounts.length) grow();
+        titles[row] = tx.getTitle();
+        setCategory(row, tx.getCategoryInfo());
+        setType(row, tx.getType());
+        setAmount(row, tx.getAmount());
+        setDate(row, tx.getDate());
+        views[row] = tx;
+        live.set(row);
+        size++;
+        tx.attach(this, row);
+    }
+
+    /**
+     * Copies the row back into its Transaction and frees it.
+     */
+    public void remove(Transaction tx) {
+        if (tx.getColumns() != this) return;
+        int row = tx.getRow();
+        tx.detach();
+        titles[row] = null;
+        views[row] = null;
+        otherTypes.remove(row);
+        otherAmounts.remove(row);
+        live.clear(row);
+        size--;
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int n = amounts.length * 2;
+        amounts = Arrays.copyOf(amounts, n);
+        days = Arrays.copyOf(days, n);
+        categories = Arrays.copyOf(categories, n);
+        titles = Arrays.copyOf(titles, n);
+        views = Arrays.copyOf(views, n);
+    }
+
+    // --- Per row, for Transaction ---
+
+    String getTitle(int row) {
+        return titles[row];
+    }
+
+    void setTitle(int row, String title) {
+        titles[row] = title;
+    }
+
+    Category getCategory(int row) {
+        return Category.byId(categories[row]);
+    }
+
+    void setCategory(int row, Category category) {
+        categories[row] = category.getId();
+    }
+
+    TransactionKind getKind(int row) {
+        return income.get(row) ? TransactionKind.INCOME : TransactionKind.EXPENSE;
+    }
+
+    String getType(int row) {
+        String type = otherTypes.get(row);
+        return type != null ? type : getKind(row).getLabel();
+    }
+
+    void setType(int row, String type) {
+        TransactionKind kind = TransactionKind.of(type);
+        income.set(row, kind == TransactionKind.INCOME);
+        if (kind.getLabel().equals(type)) otherTypes.remove(row);
+        else otherTypes.put(row, type);
+    }
+
+    double getAmount(int row) {
+        if (!otherAmounts.isEmpty()) {
+            Double exact = otherAmounts.get(row);
+            if (exact != null) return exact;
+        }
+        return amounts[row] / 100.0;
+    }
+
+    void setAmount(int row, double amount) {
+        long cents = Math.round(amount * 100);
+        amounts[row] = cents;
+        if (cents / 100.0 == amount) otherAmounts.remove(row);
+        else otherAmounts.put(row, amount);
+    }
+
+    // What getAmount() has on top of the rounded cents the scans add up
+    private double rest(int row) {
+        Double exact = otherAmounts.get(row);
+        return exact == null ? 0 : exact - amounts[row] / 100.0;
+    }
+
+    // The rest() of the matching rows, added to a cents total
+    private double withRest(long cents, Filter f) {
+        double total = cents / 100.0;
+        for (int row : otherAmounts.keySet()) {
+            if (f.matches(row)) total += rest(row);
+        }
+        return total;
+    }
+
+    LocalDate getDate(int row) {
+        return days[row] == NO_DATE ? null : LocalDate.ofEpochDay(days[row]);
+    }
+
+    void setDate(int row, LocalDate date) {
+        days[row] = date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    // --- Queries ---
+
+    // A query turned into the int compares the scans need
+    private final class Filter {
+        final boolean anyDate;
+        final int from, to; // [from, to) in epoch days
+        final boolean anyType, typeIsIncome, typeIsExpense;
+        final String type;
+        final int category; // -1 = any, -2 = a name nobody uses
+
+        Filter(TransactionQuery q) {
+            anyDate = !q.hasDateRange();
+            from = q.getFrom() != null ? (int) q.getFrom().toEpochDay() : Integer.MIN_VALUE;
+            to = q.getTo() != null ? (int) q.getTo().toEpochDay() : Integer.MAX_VALUE;
+            type = q.getType();
+            anyType = type == null;
+            typeIsIncome = TransactionKind.INCOME.getLabel().equalsIgnoreCase(type);
+            typeIsExpense = TransactionKind.EXPENSE.getLabel().equalsIgnoreCase(type);
+            if (q.getCategory() == null) {
+                category = -1;
+            } else {
+                Category c = Category.find(q.getCategory());
+                category = c != null ? c.getId() : -2;
+            }
+        }
+
+        // The rows of the right type, as bitmap words for SumKernels
+        long[] selection() {
+            long[] words = live.toLongArray();
+            if (anyType) return words;
+            long[] incomeWords = income.toLongArray();
+            for (int w = 0; w < words.length; w++) {
+                long inc = w < incomeWords.length ? incomeWords[w] : 0;
+                if (typeIsIncome) words[w] &= inc;
+                else if (typeIsExpense) words[w] &= ~inc;
+                else words[w] = 0;
+            }
+            // Rows with their own type string go by the string
+            for (Map.Entry<Integer, String> e : otherTypes.entrySet()) {
+                int row = e.getKey();
+                if (type.equalsIgnoreCase(e.getValue())) words[row >>> 6] |= 1L << row;
+                else words[row >>> 6] &= ~(1L << row);
+            }
+            return words;
+        }
+
+        // {sum in cents, count}
+        long[] sumAndCount() {
+            long[] out = new long[2];
+            if (category == -2) return out;
+            // A bounded range never includes undated rows (NO_DATE is Integer.MIN_VALUE)
+            int lo = anyDate ? from : Math.max(from, NO_DATE + 1);
+            SumKernels.sumAndCount(amounts, days, categories, selection(), end, lo, to, category, out);
+            return out;
+        }
+
+        boolean matches(int row) {
+            int day = days[row];
+            if (day == NO_DATE ? !anyDate : day < from || day >= to) return false;
+            if (category != -1 && categories[row] != category) return false;
+            if (anyType) return true;
+            if (!otherTypes.isEmpty()) {
+                String other = otherTypes.get(row);
+                if (other != null) return type.equalsIgnoreCase(other);
+            }
+            return income.get(row) ? typeIsIncome : typeIsExpense;
+        }
+    }
+
+    @Override
+    public List<Transaction> find(TransactionQuery query) {
+        Filter f = new Filter(query);
+        List<Transaction> out = new ArrayList<>();
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (f.matches(row)) out.add(views[row]);
+        }
+        return out;
+    }
+
+    @Override
+    public long count(TransactionQuery query) {
+        return new Filter(query).sumAndCount()[1];
+    }
+
+    @Override
+    public double sum(TransactionQuery query) {
+        Filter f = new Filter(query);
+        return withRest(f.sumAndCount()[0], f);
+    }
+
+    @Override
+    public Map<String, Double> sumByCategory(TransactionQuery query) {
+        Filter f = new Filter(query);
+        long[] cents = new long[Category.count()];
+        double[] rest = new double[cents.length];
+        boolean[] seen = new boolean[cents.length];
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (f.matches(row)) {
+                cents[categories[row]] += amounts[row];
+                seen[categories[row]] = true;
+            }
+        }
+        for (int row : otherAmounts.keySet()) {
+            if (f.matches(row)) rest[categories[row]] += rest(row);
+        }
+        Map<String, Double> totals = new HashMap<>();
+        for (int id = 1; id < cents.length; id++) { // 0 is "no category", left out
+            if (seen[id]) totals.put(Category.byId(id).getName(), cents[id] / 100.0 + rest[id]);
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<YearMonth, Double> sumByMonth(TransactionQuery query) {
+        Filter f = new Filter(query);
+        Map<YearMonth, long[]> cents = new TreeMap<>();
+        // Rows mostly come in date order, so the month rarely changes from one row to the next
+        int monthStart = 0, monthEnd = 0;
+        long[] current = null;
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            int day = days[row];
+            if (day == NO_DATE || !f.matches(row)) continue;
+            if (current == null || day < monthStart || day >= monthEnd) {
+                YearMonth month = YearMonth.from(LocalDate.ofEpochDay(day));
+                monthStart = (int) month.atDay(1).toEpochDay();
+                monthEnd = (int) month.plusMonths(1).atDay(1).toEpochDay();
+                current = cents.computeIfAbsent(month, m -> new long[1]);
+            }
+            current[0] += amounts[row];
+        }
+        Map<YearMonth, Double> totals = new TreeMap<>();
+        cents.forEach((month, c) -> totals.put(month, c[0] / 100.0));
+        for (int row : otherAmounts.keySet()) {
+            if (days[row] != NO_DATE && f.matches(row)) {
+                totals.merge(YearMonth.from(LocalDate.ofEpochDay(days[row])), rest(row), Double::sum);
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,238 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only log of transaction changes (add / update / delete).
+ * A single edit costs one small record on disk instead of a rewrite of the
+ * whole ledger. DataStore folds the log back into the ledger segments
+ * (compaction) once it grows large enough.
+ */
+public class TransactionJournal {
+
+    public static final byte OP_ADD = 1;
+    public static final byte OP_UPDATE = 2;
+    public static final byte OP_DELETE = 3;
+
+    /**
+     * Set on the op byte of records whose strings carry a presence flag and
+     * an int length. Records without it are from older journals and use
+     * writeUTF, which turned null into "" and failed above 64 KB.
+     */
+    private static final int LONG_STRINGS = 0x40;
+    private static final int MAX_STRING_BYTES = 1 << 24;
+
+    private final File file;
+    private int recordCount = 0;
+    private boolean torn = false;
+    // Length before an append that failed and couldn't be undone yet; -1 if none
+    private long cleanLength = -1;
+
+    public TransactionJournal(String fileName) {
+        this.file = new File(fileName);
+    }
+
+    /**
+     * One change, captured at the moment it happened so later edits to the
+     * same Transaction object don't leak into an earlier record.
+     */
+    public static final class Record {
+        final byte op;
+        final long id;
+        final String title;
+        final String category;
+        final String type;
+        final double amount;
+        final long epochDay;
+
+        private Record(byte op, long id, String title, String category, String type, double amount, long epochDay) {
+            this.op = op;
+            this.id = id;
+            this.title = title;
+            this.category = category;
+            this.type = type;
+            this.amount = amount;
+            this.epochDay = epochDay;
+        }
+
+        public static Record of(byte op, Transaction tx) {
+            if (op == OP_DELETE) {
+                return new Record(op, tx.getId(), null, null, null, 0, 0);
+            }
+            return new Record(op, tx.getId(), tx.getTitle(), tx.getCategory(), tx.getType(),
+                    tx.getAmount(), tx.getDate() != null ? tx.getDate().toEpochDay() : Long.MIN_VALUE);
+        }
+
+        private Transaction toTransaction() {
+            LocalDate date = epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+            Transaction tx = new Transaction(title, category, type, amount, date);
+            tx.setId(id);
+            return tx;
+        }
+    }
+
+    /**
+     * Number of records currently in the log (used to decide when to compact).
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * True if the last replay hit a half-written record. The caller should
+     * compact right away so new records aren't appended after the garbage.
+     */
+    public boolean isTorn() {
+        return torn;
+    }
+
+    /**
+     * Appends the given records to the end of the log and forces them to
+     * disk, so one call is one durable group commit. If it fails, whatever
+     * part of the batch reached the file is cut off again, so a retry
+     * doesn't leave a torn record in the middle of the log.
+     */
+    public void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) return;
+        if (cleanLength >= 0) {
+            cutBackTo(cleanLength);
+        }
+        long start = file.length();
+        try {
+            write(records);
+        } catch (IOException e) {
+            cleanLength = start;
+            try {
+                cutBackTo(start);
+            } catch (IOException again) {
+                // Left in cleanLength; the next append tries again first
+                System.out.println("TransactionJournal: could not undo partial append. " + again.getMessage());
+            }
+            throw e;
+        }
+        recordCount += records.size();
+    }
+
+    private void write(List<Record> records) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file, true);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            for (Record r : records) {
+                out.writeByte(r.op | LONG_STRINGS);
+                out.writeLong(r.id);
+                if (r.op != OP_DELETE) {
+                    writeString(out, r.title);
+                    writeString(out, r.category);
+                    writeString(out, r.type);
+                    out.writeDouble(r.amount);
+                    out.writeLong(r.epochDay);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    private void cutBackTo(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() > length) raf.setLength(length);
+            raf.getFD().sync();
+        }
+        cleanLength = -1;
+    }
+
+    /**
+     * Applies every record in the log on top of the segment rows.
+     * The map must be keyed by transaction id and keep list order.
+     * Ids of every record are added to touched, so rows that were left on
+     * disk (lazy history) can be told apart from their newer versions.
+     * A torn record at the end of the file (e.g. after a crash) is ignored.
+     */
+    public void replay(LinkedHashMap<Long, Transaction> rows, Set<Long> touched) {
+        recordCount = 0;
+        torn = false;
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException eof) {
+                    break;
+                }
+                boolean longStrings = (op & LONG_STRINGS) != 0;
+                op = (byte) (op & ~LONG_STRINGS);
+                long id = in.readLong();
+                touched.add(id);
+                if (op == OP_DELETE) {
+                    rows.remove(id);
+                } else {
+                    String title = longStrings ? readString(in) : in.readUTF();
+                    String category = longStrings ? readString(in) : in.readUTF();
+                    String type = longStrings ? readString(in) : in.readUTF();
+                    Record r = new Record(op, id, title, category, type, in.readDouble(), in.readLong());
+                    Transaction existing = rows.get(id);
+                    if (op == OP_UPDATE && existing != null) {
+                        applyTo(r, existing);
+                    } else {
+                        rows.put(id, r.toTransaction());
+                    }
+                }
+                recordCount++;
+            }
+        } catch (EOFException eof) {
+            torn = true;
+            System.out.println("TransactionJournal: ignoring incomplete record at end of " + file.getName());
+        } catch (IOException e) {
+            System.out.println("TransactionJournal: could not read journal. " + e.getMessage());
+        }
+        System.out.println("TransactionJournal: replayed " + recordCount + " records");
+    }
+
+    /**
+     * Empties the log. Called right after a successful compaction.
+     */
+    public void truncate() throws IOException {
+        new FileOutputStream(file, false).close();
+        recordCount = 0;
+        torn = false;
+        cleanLength = -1;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeBoolean(true);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            // Only a half-written length can look like this
+            throw new EOFException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void applyTo(Record r, Transaction tx) {
+        tx.setTitle(r.title);
+        tx.setCategory(r.category);
+        tx.setType(r.type);
+        tx.setAmount(r.amount);
+        tx.setDate(r.epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(r.epochDay));
+    }
+}
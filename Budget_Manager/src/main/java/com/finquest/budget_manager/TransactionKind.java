@@ -0,0 +1,51 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+/**
+ * Whether a transaction brings money in or takes it out. Transaction keeps
+ * its type string as typed (that's what is stored), and works this out
+ * from it once, so filters and totals compare enum constants instead of
+ * strings.
+ *
+ * The rule: type "Income", in any case, is income; everything else is an
+ * expense.
+ */
+public enum TransactionKind {
+    INCOME("Income", "+", "transaction-amount-in"),
+    EXPENSE("Expense", "-", "transaction-amount-out");
+
+    private final String label;
+    private final String sign;
+    private final String styleClass;
+
+    TransactionKind(String label, String sign, String styleClass) {
+        this.label = label;
+        this.sign = sign;
+        this.styleClass = styleClass;
+    }
+
+    public static TransactionKind of(String type) {
+        return INCOME.label.equalsIgnoreCase(type) ? INCOME : EXPENSE;
+    }
+
+    /**
+     * The type string the UI shows and saves for this kind.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * "+" or "-", put in front of formatted amounts.
+     */
+    public String getSign() {
+        return sign;
+    }
+
+    /**
+     * The stylesheet class for amounts of this kind.
+     */
+    public String getStyleClass() {
+        return styleClass;
+    }
+}
@@ -0,0 +1,99 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.time.LocalDate;
+
+/**
+ * What to look for in a TransactionRepository: a date range plus an
+ * optional type and category. Every "with" method returns a new query,
+ * so a base query can be shared and narrowed down.
+ *
+ *   TransactionQuery.all().between(from, to).ofType("Expense")
+ */
+public final class TransactionQuery {
+
+    private static final TransactionQuery ALL = new TransactionQuery(null, null, null, null);
+
+    private final LocalDate from;   // inclusive, null = no lower bound
+    private final LocalDate to;     // exclusive, null = no upper bound
+    private final String type;      // matched ignoring case, null = any
+    private final String category;  // matched exactly, null = any
+
+    private TransactionQuery(LocalDate from, LocalDate to, String type, String category) {
+        this.from = from;
+        this.to = to;
+        this.type = type;
+        this.category = category;
+    }
+
+    public static TransactionQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Limits the query to dates in [from, to). Either end may be null.
+     * Transactions without a date never match a bounded query.
+     */
+    public TransactionQuery between(LocalDate from, LocalDate to) {
+        return new TransactionQuery(from, to, type, category);
+    }
+
+    public TransactionQuery ofType(String type) {
+        return new TransactionQuery(from, to, type, category);
+    }
+
+    public TransactionQuery inCategory(String category) {
+        return new TransactionQuery(from, to, type, category);
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean hasDateRange() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Transaction tx) {
+        return matchesDate(tx.getDate()) && matchesType(tx.getType()) && matchesCategory(tx.getCategory());
+    }
+
+    /**
+     * Same as matches(Transaction), for rows read straight from the
+     * segment columns. epochDay is LedgerFile.NO_DATE when there's no date.
+     */
+    public boolean matches(int epochDay, String type, String category) {
+        if (epochDay == LedgerFile.NO_DATE) {
+            if (hasDateRange()) return false;
+        } else {
+            if (from != null && epochDay < from.toEpochDay()) return false;
+            if (to != null && epochDay >= to.toEpochDay()) return false;
+        }
+        return matchesType(type) && matchesCategory(category);
+    }
+
+    private boolean matchesDate(LocalDate date) {
+        if (date == null) return !hasDateRange();
+        return (from == null || !date.isBefore(from)) && (to == null || date.isBefore(to));
+    }
+
+    private boolean matchesType(String value) {
+        return type == null || type.equalsIgnoreCase(value);
+    }
+
+    private boolean matchesCategory(String value) {
+        return category == null || category.equals(value);
+    }
+}
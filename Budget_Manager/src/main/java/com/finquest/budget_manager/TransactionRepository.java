@@ -0,0 +1,44 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read side of the ledger. Views ask for totals and ranges here instead of
+ * looping over DataStore.getTransactions(), so each implementation can
+ * answer where the data actually lives:
+ *
+ *   InMemoryTransactionRepository - scans a list that's already loaded
+ *   DataStore                     - the loaded list plus the history that
+ *                                   is still only in the month segments
+ *   JdbcTransactionRepository     - SQL on an embedded H2 database
+ *
+ * Changes still go through DataStore; use DataStore.getRepository() to
+ * get the one that's active.
+ */
+public interface TransactionRepository {
+
+    /**
+     * The matching transactions. Order is up to the implementation.
+     */
+    List<Transaction> find(TransactionQuery query);
+
+    long count(TransactionQuery query);
+
+    /**
+     * Sum of the amounts of the matching transactions.
+     */
+    double sum(TransactionQuery query);
+
+    /**
+     * Amount per category. Transactions without a category are left out.
+     */
+    Map<String, Double> sumByCategory(TransactionQuery query);
+
+    /**
+     * Amount per month, oldest month first. Undated transactions are left out.
+     */
+    Map<YearMonth, Double> sumByMonth(TransactionQuery query);
+}
@@ -3,22 +3,21 @@ package com.finquest.budget_manager;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent; // <-- NEW IMPORT
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
 
-public class TransactionsController implements Initializable {
+public class TransactionsController implements Initializable, ManagedView {
 
     @FXML
     private TableView<Transaction> transactionTableView;
@@ -31,15 +30,31 @@ public class TransactionsController implements Initializable {
     @FXML
     private ComboBox<String> filterComboBox;
 
-    // Get the master list of all transactions from the DataStore
-    private final ObservableList<Transaction> masterList = DataStore.getInstance().getTransactions();
+    @FXML
+    private TextField searchField;
+
+    @FXML
+    private Button loadOlderButton;
+
+    @FXML
+    private Button importButton;
+
+    @FXML
+    private ProgressBar importProgress;
+
+    // The import running right now, if any
+    private StatementImporter importer;
 
-    // A filtered list that will be displayed
-    private FilteredList<Transaction> filteredList;
+    // The rows the filters let through, kept current by DataStore's FilterIndex
+    // while the view is shown (null while it's hidden)
+    private FilterIndex.Selection selection;
 
     private BudgetApplication mainApp;
     private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
 
+    // How far back each click on "Load Older" reaches
+    private static final int HISTORY_PAGE_MONTHS = 6;
+
     // Listen for currency changes to refresh the table
     private final CurrencyUtil.CurrencyChangeListener currencyListener = (code, sym) -> Platform.runLater(() -> {
         if (transactionTableView != null) transactionTableView.refresh();
@@ -48,57 +63,162 @@ public class TransactionsController implements Initializable {
     /**
      * Public setter to inject the main application instance
      */
+    @Override
     public void setMainApplication(BudgetApplication app) {
         this.mainApp = app;
     }
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        CurrencyUtil.addListener(currencyListener);
-
         // 1. Set up the filter ComboBox
         filterComboBox.setItems(FXCollections.observableArrayList("All Transactions", "Income", "Expense"));
         filterComboBox.setValue("All Transactions");
 
-        // 2. Wrap the master list in a FilteredList
-        filteredList = new FilteredList<>(masterList, p -> true); // Initially show all
-
-        // 3. Bind the filter ComboBox to the FilteredList
-        filterComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
-            applyFilter(newVal);
-        });
-
-        // 4. Bind the TableView to the FilteredList
-        transactionTableView.setItems(filteredList);
+        // 2. Bind the filter ComboBox and the search box to the table's rows
+        // (the rows themselves are attached in activate())
+        filterComboBox.valueProperty().addListener((obs, oldVal, newVal) -> applyFilter());
+        if (searchField != null) searchField.textProperty().addListener((obs, oldVal, newVal) -> applyFilter());
 
-        // 5. Set up the columns with alignment and color
+        // 3. Set up the columns with alignment and color
         setupColumns();
 
-        // 6. Add the right-click context menu
+        // 4. Add the right-click context menu
         setupContextMenu();
 
-        // 7. Add right-click to select
+        // 5. Add right-click to select
         setupRowFactory();
 
-        // 8. Add a placeholder for when the table is empty
+        // 6. Add a placeholder for when the table is empty
         transactionTableView.setPlaceholder(new Label("No transactions found."));
+
+        // 7. activate() offers older history if some of it is still on disk
+    }
+
+    /**
+     * Attaches the table to a fresh FilterIndex selection and listens for
+     * currency changes while the view is shown.
+     */
+    @Override
+    public void activate() {
+        CurrencyUtil.addListener(currencyListener);
+        selection = DataStore.getInstance().getFilterIndex().newSelection();
+        transactionTableView.setItems(selection.getRows());
+        applyFilter();
+        updateLoadOlderButton(); // Another view may have paged history in
+    }
+
+    @Override
+    public void deactivate() {
+        CurrencyUtil.removeListener(currencyListener);
+        if (selection != null) selection.dispose();
+        selection = null;
+        transactionTableView.setItems(FXCollections.observableArrayList());
+    }
+
+    /**
+     * Pages the next block of older transactions in from disk.
+     */
+    @FXML
+    private void handleLoadOlder() {
+        DataStore store = DataStore.getInstance();
+        LocalDate loadedSince = store.getLoadedSince();
+        if (loadedSince == null) {
+            updateLoadOlderButton();
+            return;
+        }
+        // Decoded in the background; the button stays off until the rows are in
+        loadOlderButton.setDisable(true);
+        store.loadHistorySinceInBackground(loadedSince.minusMonths(HISTORY_PAGE_MONTHS), () -> {
+            loadOlderButton.setDisable(false);
+            updateLoadOlderButton();
+        });
     }
 
     /**
-     * Applies the filter based on the ComboBox selection.
+     * Imports a bank statement file on a background thread.
+     * Clicking the button again while it runs cancels the import.
      */
-    private void applyFilter(String filterValue) {
-        if (filterValue == null || "All Transactions".equals(filterValue)) {
-            filteredList.setPredicate(p -> true); // Show all
-        } else {
+    @FXML
+    private void handleImport() {
+        if (importer != null) {
+            importer.cancel();
+            return;
+        }
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Bank Statement");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Bank statements", "*.csv", "*.ofx", "*.qfx", "*.qif"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = chooser.showOpenDialog(transactionTableView.getScene().getWindow());
+        if (file == null) return;
+        if (!StatementImporter.isSupported(file.toPath())) {
+            new Alert(Alert.AlertType.ERROR, "Please choose a CSV, OFX, QFX or QIF file.").showAndWait();
+            return;
+        }
+
+        importer = new StatementImporter(file.toPath());
+        importProgress.progressProperty().bind(importer.progressProperty());
+        importProgress.setVisible(true);
+        importProgress.setManaged(true);
+        importButton.setText("Cancel Import");
+
+        importer.setOnSucceeded(e -> {
+            String message = "Imported " + importer.getValue() + " transactions from " + file.getName() + ".";
+            if (importer.getSkipped() > 0) message += "\n" + importer.getSkipped() + " rows could not be read and were skipped.";
+            finishImport();
+            if (mainApp != null) mainApp.showSuccess("Import Complete", message);
+        });
+        importer.setOnCancelled(e -> finishImport());
+        importer.setOnFailed(e -> {
+            Throwable error = importer.getException();
+            finishImport();
+            if (mainApp != null) mainApp.showAlert("Import Error", "Could not import " + file.getName() + ": " + error.getMessage());
+        });
+
+        Thread thread = new Thread(importer, "finquest-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishImport() {
+        importProgress.progressProperty().unbind();
+        importProgress.setVisible(false);
+        importProgress.setManaged(false);
+        importButton.setText("Import");
+        importer = null;
+    }
+
+    private void updateLoadOlderButton() {
+        if (loadOlderButton == null) return;
+        boolean more = DataStore.getInstance().hasUnloadedHistory();
+        loadOlderButton.setVisible(more);
+        loadOlderButton.setManaged(more);
+    }
+
+    /**
+     * Applies the type filter and the search text. The type is answered
+     * by DataStore's FilterIndex and the search by its SearchIndex, so
+     * neither rescans every row.
+     */
+    private void applyFilter() {
+        if (selection == null) return; // Hidden; activate() filters again
+        String filterValue = filterComboBox.getValue();
+        FilterIndex.Criteria criteria = FilterIndex.Criteria.all();
+        if (filterValue != null && !"All Transactions".equals(filterValue)) {
             // Show only "Income" or "Expense"
-            filteredList.setPredicate(tx -> filterValue.equalsIgnoreCase(tx.getType()));
+            criteria.kind(TransactionKind.of(filterValue));
+        }
+        String search = searchField != null ? searchField.getText() : null;
+        if (search != null && !search.isBlank()) {
+            criteria.search(DataStore.getInstance().getSearchIndex(), search);
         }
+        selection.setCriteria(criteria);
     }
 
     private void setupColumns() {
         // --- NEW "CARTOON" ICON COLUMN ---
-        iconCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        iconCol.setCellValueFactory(cd -> cd.getValue().categoryProperty());
         iconCol.setCellFactory(column -> new TableCell<Transaction, String>() {
             @Override
             protected void updateItem(String category, boolean empty) {
@@ -106,7 +226,7 @@ public class TransactionsController implements Initializable {
                 if (empty || category == null) {
                     setText(null);
                 } else {
-                    setText(getEmojiForCategory(category));
+                    setText(Category.of(category).getIcon()); // Worked out once per category
                     getStyleClass().add("transaction-icon");
                     setAlignment(Pos.CENTER);
                 }
@@ -114,7 +234,7 @@ public class TransactionsController implements Initializable {
         });
 
         // Title Column
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
+        titleCol.setCellValueFactory(cd -> cd.getValue().titleProperty());
         titleCol.setCellFactory(column -> new TableCell<Transaction, String>() {
             @Override
             protected void updateItem(String item, boolean empty) {
@@ -125,7 +245,7 @@ public class TransactionsController implements Initializable {
         });
 
         // Category Column
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        categoryCol.setCellValueFactory(cd -> cd.getValue().categoryProperty());
         categoryCol.setCellFactory(column -> new TableCell<Transaction, String>() {
             @Override
             protected void updateItem(String item, boolean empty) {
@@ -136,7 +256,7 @@ public class TransactionsController implements Initializable {
         });
 
         // Date Column
-        dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
+        dateCol.setCellValueFactory(cd -> cd.getValue().dateProperty());
         dateCol.setCellFactory(column -> new TableCell<Transaction, LocalDate>() {
             @Override
             protected void updateItem(LocalDate item, boolean empty) {
@@ -151,7 +271,7 @@ public class TransactionsController implements Initializable {
         });
 
         // Amount Column
-        amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
+        amountCol.setCellValueFactory(cd -> cd.getValue().amountProperty());
         amountCol.setCellFactory(column -> new TableCell<Transaction, Double>() {
             @Override
             protected void updateItem(Double item, boolean empty) {
@@ -163,13 +283,9 @@ public class TransactionsController implements Initializable {
                 } else {
                     if (getTableRow() != null && getTableRow().getItem() != null) {
                         Transaction tx = getTableRow().getItem();
-                        if ("Income".equalsIgnoreCase(tx.getType())) {
-                            setText("+" + CurrencyUtil.formatCurrency(item));
-                            getStyleClass().add("transaction-amount-in");
-                        } else {
-                            setText("-" + CurrencyUtil.formatCurrency(item));
-                            getStyleClass().add("transaction-amount-out");
-                        }
+                        TransactionKind kind = tx.getKind();
+                        setText(kind.getSign() + CurrencyUtil.formatCurrency(item));
+                        getStyleClass().add(kind.getStyleClass());
                     }
                     setAlignment(Pos.CENTER_RIGHT);
                 }
@@ -232,29 +348,6 @@ public class TransactionsController implements Initializable {
         });
     }
 
-    /**
-     * Helper method to get an emoji for a category.
-     */
-    private String getEmojiForCategory(String category) {
-        if (category == null) return "🧾"; // Default receipt
-        switch (category.toLowerCase()) {
-            case "food & dining": return "🍔";
-            case "shopping": return "🛍️";
-            case "transportation": return "🚗";
-            case "bills & utilities": return "💡";
-            case "entertainment": return "🎬";
-            case "healthcare": return "❤️‍🩹";
-            case "education": return "🎓";
-            case "business": return "💼";
-            case "income": case "salary": case "bonus": case "freelance": return "💰";
-            default: return "🧾";
-        }
-    }
-
-    public void dispose() {
-        CurrencyUtil.removeListener(currencyListener);
-    }
-
     /**
      * NEW: Called when the root VBox is clicked. Clears the table selection.
      */
@@ -0,0 +1,75 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SumKernels on the Vector API. Only loaded when SumKernels found the
+ * jdk.incubator.vector module, so nothing else may refer to this class.
+ * Picking the shapes can fail (see probe()), so SumKernels loads it inside
+ * a try.
+ *
+ * Amounts are longs and days ints, so the int vectors are half as wide
+ * as the long ones to give both the same number of lanes. The lane count
+ * divides 64, so each step's bits sit in one word of the selection.
+ */
+final class VectorSums {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.length() * Integer.SIZE));
+
+    private VectorSums() {
+    }
+
+    /**
+     * True if the vector loop is worth using here and gives the same
+     * result as the plain one on a small sample. With a one-lane preferred
+     * species (no wide vectors on this CPU) there's nothing to gain, and
+     * there's no 32-bit int shape to pair it with anyway, so this class
+     * fails to load there; SumKernels catches that.
+     */
+    static boolean probe() {
+        int n = LONGS.length() * 3 + 1;
+        long[] amounts = new long[n];
+        int[] days = new int[n];
+        int[] categories = new int[n];
+        for (int i = 0; i < n; i++) {
+            amounts[i] = 100 + i;
+            days[i] = i;
+            categories[i] = i % 2;
+        }
+        long[] select = {0x5555555555555555L};
+        long[] vector = new long[2], scalar = new long[2];
+        sumAndCount(amounts, days, categories, select, n, 1, n, 0, vector);
+        SumKernels.scalarSumAndCount(amounts, days, categories, select, n, 0, 1, n, 0, scalar);
+        return LONGS.length() > 1 && vector[0] == scalar[0] && vector[1] == scalar[1];
+    }
+
+    static void sumAndCount(long[] amounts, int[] days, int[] categories, long[] select, int n,
+                            int from, int to, int category, long[] out) {
+        int lanes = LONGS.length();
+        long laneBits = lanes == 64 ? -1L : (1L << lanes) - 1;
+        int bound = LONGS.loopBound(Math.min(n, select.length << 6));
+        LongVector sum = LongVector.zero(LONGS);
+        long count = 0;
+        for (int i = 0; i < bound; i += lanes) {
+            long bits = (select[i >>> 6] >>> (i & 63)) & laneBits;
+            if (bits == 0) continue; // Nothing selected here, don't even load
+            IntVector day = IntVector.fromArray(INTS, days, i);
+            VectorMask<Integer> match = day.compare(VectorOperators.GE, from).and(day.compare(VectorOperators.LT, to));
+            if (category != -1) match = match.and(IntVector.fromArray(INTS, categories, i).compare(VectorOperators.EQ, category));
+            VectorMask<Long> m = VectorMask.fromLong(LONGS, bits).and(match.cast(LONGS));
+            sum = sum.add(LongVector.fromArray(LONGS, amounts, i), m);
+            count += m.trueCount();
+        }
+        out[0] += sum.reduceLanes(VectorOperators.ADD);
+        out[1] += count;
+        SumKernels.scalarSumAndCount(amounts, days, categories, select, n, bound, from, to, category, out);
+    }
+}
@@ -0,0 +1,150 @@
+//Esguerra
+package com.finquest.budget_manager;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads the sidebar's FXML views once and keeps them, so switching views
+ * only swaps a node instead of parsing the FXML and building a new
+ * controller on every click. The view being left is deactivate()d and
+ * the one being shown activate()d (see ManagedView), so only the visible
+ * view has listeners attached.
+ *
+ * preload() builds views ahead of time on a background thread, so the
+ * first visit doesn't pay for the FXML either. Nodes that aren't in a
+ * scene yet may be built on any thread, so the FXML parse, the node tree
+ * and the controller's initialize() all happen there; the view is handed
+ * to the FX thread to be kept and given the application. Controllers
+ * must therefore leave the DataStore alone in initialize() and read it in
+ * activate() instead. Everything but preload's worker is FX thread only.
+ */
+public class ViewManager {
+
+    private static final class LoadedView {
+        final Parent root;
+        final Object controller;
+
+        LoadedView(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
+    // One at a time, so the views come in the order they were asked for
+    private static final ExecutorService PRELOAD_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "finquest-preload");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final BudgetApplication app;
+    private final Map<String, LoadedView> views = new HashMap<>(); // By FXML path
+    private final Map<String, FutureTask<LoadedView>> preloading = new HashMap<>(); // By FXML path
+    private ManagedView active;
+
+    public ViewManager(BudgetApplication app) {
+        this.app = app;
+    }
+
+    /**
+     * Returns the view for an FXML resource, loading it the first time,
+     * and makes its controller the active one.
+     */
+    public Parent show(String fxmlPath) throws IOException {
+        LoadedView view = views.get(fxmlPath);
+        if (view == null) view = takePreloaded(fxmlPath);
+        if (view == null) {
+            view = load(fxmlPath);
+            keep(fxmlPath, view);
+            System.out.println("ViewManager: loaded " + fxmlPath);
+        }
+        switchTo(view.controller instanceof ManagedView ? (ManagedView) view.controller : null);
+        return view.root;
+    }
+
+    /**
+     * Starts building the given views in the background, in order, so
+     * they're ready before their first visit. Views already loaded or on
+     * their way are skipped.
+     */
+    public void preload(String... fxmlPaths) {
+        for (String path : fxmlPaths) {
+            if (views.containsKey(path) || preloading.containsKey(path)) continue;
+            FutureTask<LoadedView> task = new FutureTask<>(() -> load(path)) {
+                @Override
+                protected void done() {
+                    Platform.runLater(() -> {
+                        if (preloading.get(path) != this) return; // Already taken by show()
+                        LoadedView view = takePreloaded(path);
+                        if (view != null) System.out.println("ViewManager: preloaded " + path);
+                    });
+                }
+            };
+            preloading.put(path, task);
+            PRELOAD_EXECUTOR.execute(task);
+        }
+    }
+
+    /**
+     * Keeps a preloaded view, waiting for it if it's being built right
+     * now. Returns null if there's none, it hasn't been started yet (it's
+     * quicker to load it here than to wait behind the others) or it failed.
+     */
+    private LoadedView takePreloaded(String fxmlPath) {
+        FutureTask<LoadedView> task = preloading.remove(fxmlPath);
+        if (task == null || task.cancel(false)) return null;
+        try {
+            LoadedView view = task.get();
+            keep(fxmlPath, view);
+            return view;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("ViewManager: preloading " + fxmlPath + " failed: " + e.getCause());
+            return null;
+        }
+    }
+
+    private void keep(String fxmlPath, LoadedView view) {
+        views.put(fxmlPath, view);
+        if (view.controller instanceof ManagedView) ((ManagedView) view.controller).setMainApplication(app);
+    }
+
+    // Safe off the FX thread as long as the controller's initialize() is
+    private LoadedView load(String fxmlPath) throws IOException {
+        URL url = getClass().getResource(fxmlPath);
+        if (url == null) throw new FileNotFoundException("No such view: " + fxmlPath);
+        FXMLLoader loader = new FXMLLoader(url);
+        Parent root = loader.load();
+        return new LoadedView(root, loader.getController());
+    }
+
+    /**
+     * Call when something that isn't one of these views (the dashboard)
+     * is shown instead.
+     */
+    public void showOther() {
+        switchTo(null);
+    }
+
+    // Showing the same view again re-activates it, which refreshes it
+    private void switchTo(ManagedView next) {
+        if (active != null) active.deactivate();
+        active = next;
+        if (active != null) active.activate();
+    }
+}
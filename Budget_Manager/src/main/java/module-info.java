@@ -16,6 +16,11 @@ module com.finquest.budget_manager {
     requires org.kordamp.bootstrapfx.core;
     requires eu.hansolo.tilesfx;
 
+    requires java.sql;
+    requires com.h2database; // An automatic module; the lint warning is turned off in the pom
+    // Optional: SumKernels uses it when the app is started with --add-modules jdk.incubator.vector
+    requires static jdk.incubator.vector;
+
     opens com.finquest.budget_manager to javafx.fxml;
 
     exports com.finquest.budget_manager;